@@ -0,0 +1,339 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.hyperledger.fabric.contract.ContractRuntimeException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * The type Aggregator.
+ * 流式聚合：逐条读取文档中需要的字段，累加到分组中，文档本身不会被保存
+ * <p>
+ * 聚合规则格式：{"groupBy":"dept","fields":["amount","score.total"]}，groupBy 可省略（整体为一组），
+ * 字段路径用 "." 分隔嵌套字段。每个分组输出记录数，每个字段输出 count/sum/min/max/avg，只统计数字类型的值。
+ * 数字按原有写法以 BigDecimal 累加，超过 2^53 的整数和金额小数不会丢失精度；avg 保留 34 位有效数字。
+ * <p>
+ * 输出格式：{"groups":[{"group":"a","count":2,"fields":{"amount":{"count":2,"sum":3,"min":1,"max":2,"avg":1.5}}}],"unparsed":0,"meta":{...}}，
+ * unparsed 为无法解析为 json 对象、未参与聚合的文档数；把上一次的输出作为 partial 传入即可在其基础上继续累加
+ */
+public final class Aggregator {
+
+	private static final String GROUP_BY = "groupBy";
+
+	private static final String FIELDS = "fields";
+
+	private static final String GROUPS = "groups";
+
+	private static final String GROUP = "group";
+
+	private static final String COUNT = "count";
+
+	private static final String UNPARSED = "unparsed";
+
+	private final String groupBy;
+
+	private final List<String> fields;
+
+	/**
+	 * 需要读取的字段路径树，叶子节点为完整路径
+	 */
+	private final Map<String, Object> tree = new HashMap<>();
+
+	private final Map<String, Bucket> buckets = new LinkedHashMap<>();
+
+	/**
+	 * 无法解析、未参与聚合的文档数
+	 */
+	private long unparsed;
+
+	private Aggregator(String groupBy, List<String> fields) {
+		this.groupBy = groupBy;
+		this.fields = fields;
+		if (groupBy != null) {
+			addPath(groupBy);
+		}
+		for (String field : fields) {
+			addPath(field);
+		}
+	}
+
+	/**
+	 * Create an aggregator from the spec, and restore the partial result when present.
+	 *
+	 * @param spec    the aggregation spec json
+	 * @param partial the result of a previous call, may be null or empty
+	 * @return the aggregator
+	 */
+	public static Aggregator of(String spec, String partial) {
+		JsonObject json = parseObject(spec, "Aggregation spec");
+		String groupBy = null;
+		if (json.has(GROUP_BY) && !json.get(GROUP_BY).isJsonNull()) {
+			groupBy = pathOf(json.get(GROUP_BY));
+		}
+		List<String> fields = new ArrayList<>();
+		if (json.has(FIELDS)) {
+			if (!json.get(FIELDS).isJsonArray()) {
+				throw new ContractRuntimeException("Aggregation fields must be a json array of field paths");
+			}
+			for (JsonElement field : json.getAsJsonArray(FIELDS)) {
+				fields.add(pathOf(field));
+			}
+		}
+		Aggregator aggregator = new Aggregator(groupBy, fields);
+		if (partial != null && !partial.isEmpty()) {
+			aggregator.restore(parseObject(partial, "Partial aggregation"));
+		}
+		return aggregator;
+	}
+
+	/**
+	 * Accumulate one document.
+	 *
+	 * @param json the document json
+	 */
+	public void accept(String json) {
+		Map<String, JsonPrimitive> values = new HashMap<>();
+		try {
+			JsonReader in = JsonMerger.newReader(json);
+			if (in.peek() != JsonToken.BEGIN_OBJECT) {
+				unparsed++;
+				return;
+			}
+			extract(in, tree, values);
+		} catch (IOException | IllegalStateException | NumberFormatException e) {
+			// 无法解析的文档不参与聚合，只计数
+			unparsed++;
+			return;
+		}
+		JsonElement group = groupBy == null ? JsonNull.INSTANCE : values.get(groupBy);
+		if (group == null) {
+			group = JsonNull.INSTANCE;
+		}
+		String groupKey = group.toString();
+		Bucket bucket = buckets.get(groupKey);
+		if (bucket == null) {
+			if (buckets.size() >= ContractConfig.AGGREGATE_MAX_GROUPS) {
+				throw new ContractRuntimeException(
+						"Too many aggregation groups, limit " + ContractConfig.AGGREGATE_MAX_GROUPS);
+			}
+			bucket = new Bucket(group);
+			buckets.put(groupKey, bucket);
+		}
+		bucket.count++;
+		for (String field : fields) {
+			JsonPrimitive value = values.get(field);
+			if (value != null && value.isNumber()) {
+				bucket.stats(field).add(value.getAsBigDecimal());
+			}
+		}
+	}
+
+	/**
+	 * Result json with the scan meta.
+	 *
+	 * @param meta the meta
+	 * @return the string
+	 */
+	public String toJson(QueryMeta meta) {
+		JsonArray groups = new JsonArray();
+		for (Bucket bucket : buckets.values()) {
+			JsonObject group = new JsonObject();
+			group.add(GROUP, bucket.group);
+			group.addProperty(COUNT, bucket.count);
+			JsonObject stats = new JsonObject();
+			for (String field : fields) {
+				Stats stat = bucket.stats.get(field);
+				stats.add(field, stat == null ? new Stats().toJson() : stat.toJson());
+			}
+			group.add(FIELDS, stats);
+			groups.add(group);
+		}
+		JsonObject result = new JsonObject();
+		result.add(GROUPS, groups);
+		result.addProperty(UNPARSED, unparsed);
+		JsonObject metaJson = new JsonObject();
+		metaJson.addProperty("recordsCount", meta.getRecordsCount());
+		metaJson.addProperty("bookmark", meta.getBookmark());
+		metaJson.addProperty("truncated", meta.getTruncated());
+		result.add("meta", metaJson);
+		return result.toString();
+	}
+
+	private void restore(JsonObject partial) {
+		if (!partial.has(GROUPS) || !partial.get(GROUPS).isJsonArray()) {
+			throw new ContractRuntimeException("Partial aggregation must contain groups");
+		}
+		try {
+			for (JsonElement element : partial.getAsJsonArray(GROUPS)) {
+				JsonObject group = element.getAsJsonObject();
+				JsonElement key = group.has(GROUP) ? group.get(GROUP) : JsonNull.INSTANCE;
+				Bucket bucket = new Bucket(key);
+				bucket.count = group.get(COUNT).getAsLong();
+				JsonObject stats = group.has(FIELDS) ? group.getAsJsonObject(FIELDS) : new JsonObject();
+				for (String field : fields) {
+					if (stats.has(field)) {
+						bucket.stats.put(field, Stats.parse(stats.getAsJsonObject(field)));
+					}
+				}
+				buckets.put(key.toString(), bucket);
+			}
+			unparsed = partial.has(UNPARSED) ? partial.get(UNPARSED).getAsLong() : 0L;
+		} catch (IllegalStateException | ClassCastException | NullPointerException | NumberFormatException e) {
+			throw new ContractRuntimeException("Invalid partial aggregation", e);
+		}
+	}
+
+	private void addPath(String path) {
+		Map<String, Object> node = tree;
+		String[] names = path.split("\\.");
+		for (int i = 0; i < names.length - 1; i++) {
+			Object child = node.get(names[i]);
+			if (!(child instanceof Map)) {
+				child = new HashMap<String, Object>();
+				node.put(names[i], child);
+			}
+			node = castNode(child);
+		}
+		node.put(names[names.length - 1], path);
+	}
+
+	/**
+	 * 流式读取需要的字段，其他字段直接跳过
+	 */
+	private static void extract(JsonReader in, Map<String, Object> node, Map<String, JsonPrimitive> values)
+			throws IOException {
+		in.beginObject();
+		while (in.hasNext()) {
+			Object child = node.get(in.nextName());
+			if (child instanceof String) {
+				switch (in.peek()) {
+					case NUMBER:
+						values.put((String) child, new JsonPrimitive(new BigDecimal(in.nextString())));
+						break;
+					case STRING:
+						values.put((String) child, new JsonPrimitive(in.nextString()));
+						break;
+					case BOOLEAN:
+						values.put((String) child, new JsonPrimitive(in.nextBoolean()));
+						break;
+					default:
+						in.skipValue();
+				}
+			} else if (child instanceof Map && in.peek() == JsonToken.BEGIN_OBJECT) {
+				extract(in, castNode(child), values);
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> castNode(Object node) {
+		return (Map<String, Object>) node;
+	}
+
+	private static String pathOf(JsonElement element) {
+		if (!element.isJsonPrimitive() || !element.getAsJsonPrimitive().isString() || element.getAsString().isEmpty()) {
+			throw new ContractRuntimeException("Invalid field path: " + element);
+		}
+		return element.getAsString();
+	}
+
+	private static JsonObject parseObject(String json, String name) {
+		try {
+			JsonElement element = JsonParser.parseString(json);
+			if (element.isJsonObject()) {
+				return element.getAsJsonObject();
+			}
+		} catch (JsonParseException e) {
+			throw new ContractRuntimeException(name + " must be a json object", e);
+		}
+		throw new ContractRuntimeException(name + " must be a json object");
+	}
+
+	/**
+	 * 一个分组的累加结果
+	 */
+	private static final class Bucket {
+
+		private final JsonElement group;
+
+		private long count;
+
+		private final Map<String, Stats> stats = new LinkedHashMap<>();
+
+		private Bucket(JsonElement group) {
+			this.group = group;
+		}
+
+		private Stats stats(String field) {
+			Stats stat = stats.get(field);
+			if (stat == null) {
+				stat = new Stats();
+				stats.put(field, stat);
+			}
+			return stat;
+		}
+	}
+
+	/**
+	 * 一个字段的累加结果，min/max 在没有值时为 null
+	 */
+	private static final class Stats {
+
+		private long count;
+
+		private BigDecimal sum = BigDecimal.ZERO;
+
+		private BigDecimal min;
+
+		private BigDecimal max;
+
+		private void add(BigDecimal value) {
+			count++;
+			sum = sum.add(value);
+			min = min == null || value.compareTo(min) < 0 ? value : min;
+			max = max == null || value.compareTo(max) > 0 ? value : max;
+		}
+
+		private JsonObject toJson() {
+			JsonObject json = new JsonObject();
+			json.addProperty(COUNT, count);
+			json.addProperty("sum", sum);
+			if (count > 0) {
+				json.addProperty("min", min);
+				json.addProperty("max", max);
+				json.addProperty("avg", sum.divide(BigDecimal.valueOf(count), MathContext.DECIMAL128));
+			}
+			return json;
+		}
+
+		private static Stats parse(JsonObject json) {
+			Stats stat = new Stats();
+			stat.count = json.get(COUNT).getAsLong();
+			stat.sum = json.get("sum").getAsBigDecimal();
+			if (stat.count > 0) {
+				stat.min = json.get("min").getAsBigDecimal();
+				stat.max = json.get("max").getAsBigDecimal();
+			}
+			return stat;
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import java.util.Objects;
+
+/**
+ * <p>
+ * The type Batch result.
+ * 批量交易中单条操作的执行结果
+ */
+@DataType
+public class BatchResult {
+
+	/**
+	 * Index
+	 */
+	@Property
+	private Integer index;
+
+	/**
+	 * Type
+	 */
+	@Property
+	private String type;
+
+	/**
+	 * Key
+	 */
+	@Property
+	private String key;
+
+	/**
+	 * Success
+	 */
+	@Property
+	private Boolean success;
+
+	/**
+	 * Message
+	 */
+	@Property
+	private String message;
+
+	/**
+	 * Batch result
+	 *
+	 * @param index   index
+	 * @param type    type
+	 * @param key     key
+	 * @param success success
+	 * @param message message
+	 */
+	public BatchResult(Integer index, String type, String key, Boolean success, String message) {
+		this.index = index;
+		this.type = type;
+		this.key = key;
+		this.success = success;
+		this.message = message;
+	}
+
+	/**
+	 * Gets index.
+	 *
+	 * @return the index
+	 */
+	public Integer getIndex() {
+		return index;
+	}
+
+	/**
+	 * Sets index.
+	 *
+	 * @param index the index
+	 */
+	public void setIndex(Integer index) {
+		this.index = index;
+	}
+
+	/**
+	 * Gets type.
+	 *
+	 * @return the type
+	 */
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * Sets type.
+	 *
+	 * @param type the type
+	 */
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	/**
+	 * Gets key.
+	 *
+	 * @return the key
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Sets key.
+	 *
+	 * @param key the key
+	 */
+	public void setKey(String key) {
+		this.key = key;
+	}
+
+	/**
+	 * Gets success.
+	 *
+	 * @return the success
+	 */
+	public Boolean getSuccess() {
+		return success;
+	}
+
+	/**
+	 * Sets success.
+	 *
+	 * @param success the success
+	 */
+	public void setSuccess(Boolean success) {
+		this.success = success;
+	}
+
+	/**
+	 * Gets message.
+	 *
+	 * @return the message
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * Sets message.
+	 *
+	 * @param message the message
+	 */
+	public void setMessage(String message) {
+		this.message = message;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(getIndex(), getType(), getKey(), getSuccess(), getMessage());
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+
+		if ((obj == null) || (getClass() != obj.getClass())) {
+			return false;
+		}
+
+		BatchResult other = (BatchResult) obj;
+
+		return Objects.deepEquals(new Object[] { getIndex(), getType(), getKey(), getSuccess(), getMessage() },
+				new Object[] { other.getIndex(), other.getType(), other.getKey(), other.getSuccess(),
+						other.getMessage() });
+	}
+
+	@Override
+	public String toString() {
+		return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [index=" + index
+				+ ", type=" + type + ", key=" + key + ", success=" + success + ", message=" + message + "]";
+	}
+}
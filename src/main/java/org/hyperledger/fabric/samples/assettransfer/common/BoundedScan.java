@@ -0,0 +1,176 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import org.hyperledger.fabric.protos.peer.ChaincodeShim.QueryResponseMetadata;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+import java.util.Iterator;
+
+/**
+ * <p>
+ * The type Bounded scan.
+ * 有界的分页扫描：按页向 peer 拉取结果并逐条交给 visitor 处理，记录数、字节数或耗时任一达到上限即停止
+ * <p>
+ * 在一页中间停止时，返回的书签由该页的起始书签和页内偏移组成（格式为 "偏移:书签"），
+ * 继续查询时从起始书签重新拉取并跳过已返回的记录，因此结果不会遗漏也不会重复。
+ * 偏移为 0 时返回的就是 peer 的原始书签，与 query 方法返回的书签兼容。
+ */
+public final class BoundedScan {
+
+	private static final char SKIP_SEPARATOR = ':';
+
+	/**
+	 * Page source
+	 */
+	public interface PageSource {
+
+		/**
+		 * Fetch one page.
+		 *
+		 * @param pageSize the page size
+		 * @param bookmark the bookmark
+		 * @return the page
+		 */
+		QueryResultsIteratorWithMetadata<KeyValue> fetch(int pageSize, String bookmark);
+	}
+
+	/**
+	 * Visitor
+	 */
+	public interface Visitor {
+
+		/**
+		 * Visit one record.
+		 *
+		 * @param keyValue the key value
+		 */
+		void visit(KeyValue keyValue);
+	}
+
+	private final int maxRecords;
+
+	private final long maxBytes;
+
+	private final long deadline;
+
+	private final int pageSize;
+
+	/**
+	 * Bounded scan
+	 *
+	 * @param maxRecords max records
+	 * @param maxBytes   max bytes
+	 * @param maxMillis  max millis
+	 * @param pageSize   page size
+	 */
+	public BoundedScan(int maxRecords, long maxBytes, long maxMillis, int pageSize) {
+		this.maxRecords = maxRecords;
+		this.maxBytes = maxBytes;
+		this.deadline = System.nanoTime() + maxMillis * 1000000L;
+		this.pageSize = Math.max(1, pageSize);
+	}
+
+	/**
+	 * Create a scan bounded by the given limits, null or non-positive limits fall back to the contract config.
+	 *
+	 * @param maxRecords max records
+	 * @param maxBytes   max bytes
+	 * @param maxMillis  max millis
+	 * @return the bounded scan
+	 */
+	public static BoundedScan of(Integer maxRecords, Integer maxBytes, Integer maxMillis) {
+		return new BoundedScan(orDefault(maxRecords, ContractConfig.QUERY_MAX_RECORDS),
+				orDefault(maxBytes, ContractConfig.QUERY_MAX_BYTES),
+				orDefault(maxMillis, ContractConfig.QUERY_MAX_MILLIS), ContractConfig.QUERY_PAGE_SIZE);
+	}
+
+	/**
+	 * Run the scan.
+	 *
+	 * @param source   the page source
+	 * @param bookmark the bookmark returned by a previous scan, or empty
+	 * @param visitor  the visitor
+	 * @return the meta with records count, resumable bookmark and truncated flag
+	 */
+	public QueryMeta run(PageSource source, String bookmark, Visitor visitor) {
+		String pageBookmark = bookmark == null ? "" : bookmark;
+		int skip = 0;
+		int separator = pageBookmark.indexOf(SKIP_SEPARATOR);
+		if (separator > 0 && isDigits(pageBookmark, separator)) {
+			skip = Integer.parseInt(pageBookmark.substring(0, separator));
+			pageBookmark = pageBookmark.substring(separator + 1);
+		}
+		int records = 0;
+		long bytes = 0;
+		String nextBookmark = pageBookmark;
+		boolean truncated = false;
+		while (true) {
+			int size = skip + Math.min(pageSize, maxRecords - records);
+			QueryResultsIteratorWithMetadata<KeyValue> page = source.fetch(size, pageBookmark);
+			int index = 0;
+			boolean stopped = false;
+			QueryResponseMetadata metadata;
+			try {
+				Iterator<KeyValue> it = page.iterator();
+				while (it.hasNext()) {
+					KeyValue keyValue = it.next();
+					if (index < skip) {
+						index++;
+						continue;
+					}
+					byte[] value = keyValue.getValue();
+					int length = value == null ? 0 : value.length;
+					if (records > 0 && (records >= maxRecords || bytes + length > maxBytes
+							|| System.nanoTime() - deadline > 0)) {
+						stopped = true;
+						break;
+					}
+					visitor.visit(keyValue);
+					records++;
+					bytes += length;
+					index++;
+				}
+				metadata = page.getMetadata();
+			} finally {
+				try {
+					page.close();
+				} catch (Exception e) {
+					// 关闭失败不影响已读取的结果
+				}
+			}
+			if (stopped) {
+				nextBookmark = index == 0 ? pageBookmark : index + String.valueOf(SKIP_SEPARATOR) + pageBookmark;
+				truncated = true;
+				break;
+			}
+			nextBookmark = metadata == null ? "" : metadata.getBookmark();
+			if (index < size || nextBookmark.isEmpty()) {
+				break;
+			}
+			if (records >= maxRecords || bytes >= maxBytes || System.nanoTime() - deadline > 0) {
+				truncated = true;
+				break;
+			}
+			pageBookmark = nextBookmark;
+			skip = 0;
+		}
+		QueryMeta meta = new QueryMeta();
+		meta.setRecordsCount(records);
+		meta.setBookmark(nextBookmark);
+		meta.setTruncated(truncated);
+		return meta;
+	}
+
+	private static boolean isDigits(String value, int end) {
+		for (int i = 0; i < end; i++) {
+			if (!Character.isDigit(value.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int orDefault(Integer value, int defaultValue) {
+		return value == null || value < 1 ? defaultValue : value;
+	}
+}
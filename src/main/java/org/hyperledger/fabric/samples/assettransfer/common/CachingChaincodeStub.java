@@ -0,0 +1,406 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import org.hyperledger.fabric.contract.ContractRuntimeException;
+import org.hyperledger.fabric.protos.peer.ChaincodeShim.QueryResponseMetadata;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * <p>
+ * The type Caching chaincode stub.
+ * 交易级别的世界状态缓存，生命周期与一笔交易相同
+ * <p>
+ * 每个 key 第一次读取时仍然访问账本（读集与不使用缓存时一致），之后的重复读取直接返回内存中的值；
+ * 本交易中已写入的 key 读取时返回写入的值。写操作先缓存在内存中，交易方法执行成功后由
+ * {@link #flush()} 一次性提交给 peer，同一个 key 上先 delState 再 putState 只会提交最后一次写入，
+ * 与 Fabric 写集只保留最后一次写入的语义一致。
+ * <p>
+ * 范围扫描和 rich query 的结果同样叠加本交易的写缓存：跳过已删除的 key，已写入的 key 返回写入的值；
+ * 不分页的 getStateByRange/getStateByPartialCompositeKey 还会按 key 的 UTF-8 字节顺序插入范围内新写入的 key。
+ * 分页查询和 rich query 无法判断新写入的 key 是否属于本页或满足 selector，不插入新 key。
+ * 写缓存在迭代时实时读取，迭代开始后才写入的新 key 不会被插入。
+ * <p>
+ * 批量操作可以在每一项开始前调用 {@link #savepoint()}，该项失败时调用 {@link #rollback()} 丢弃该项缓存的写操作，
+ * 读操作已经进入读集，不会撤销。
+ */
+public class CachingChaincodeStub extends DelegatingChaincodeStub {
+
+	private static final byte[] EMPTY = new byte[0];
+
+	/**
+	 * 保存点记录中表示设置保存点时 key 不在写缓存中
+	 */
+	private static final byte[] ABSENT = new byte[0];
+
+	/**
+	 * 从账本读取到的值
+	 */
+	private final Map<String, byte[]> reads = new HashMap<>();
+
+	/**
+	 * 待提交的写操作，值为 null 表示删除
+	 */
+	private final Map<String, byte[]> writes = new LinkedHashMap<>();
+
+	/**
+	 * 保存点之后第一次写入前 key 在写缓存中的值，没有保存点时为 null
+	 */
+	private Map<String, byte[]> undo;
+
+	/**
+	 * Caching chaincode stub
+	 *
+	 * @param delegate delegate
+	 */
+	public CachingChaincodeStub(ChaincodeStub delegate) {
+		super(delegate);
+	}
+
+	@Override
+	public byte[] getState(String key) {
+		byte[] value;
+		if (reads.containsKey(key)) {
+			value = reads.get(key);
+		} else {
+			value = delegate.getState(key);
+			reads.put(key, value);
+		}
+		if (writes.containsKey(key)) {
+			byte[] written = writes.get(key);
+			return written == null ? EMPTY : written;
+		}
+		return value;
+	}
+
+	@Override
+	public void putState(String key, byte[] value) {
+		validateKey(key);
+		if (value == null) {
+			throw new NullPointerException("value cannot be null");
+		}
+		remember(key);
+		writes.put(key, value);
+	}
+
+	@Override
+	public void delState(String key) {
+		validateKey(key);
+		remember(key);
+		writes.put(key, null);
+	}
+
+	/**
+	 * Set a savepoint, replacing the previous one.
+	 * 设置保存点，之后的写操作可以通过 {@link #rollback()} 撤销
+	 */
+	public void savepoint() {
+		undo = new HashMap<>();
+	}
+
+	/**
+	 * Discard the writes made since the savepoint.
+	 * 将写缓存恢复到保存点时的状态并清除保存点
+	 */
+	public void rollback() {
+		if (undo == null) {
+			throw new IllegalStateException("no savepoint");
+		}
+		for (Map.Entry<String, byte[]> entry : undo.entrySet()) {
+			if (entry.getValue() == ABSENT) {
+				writes.remove(entry.getKey());
+			} else {
+				writes.put(entry.getKey(), entry.getValue());
+			}
+		}
+		undo = null;
+	}
+
+	/**
+	 * Keep the writes made since the savepoint and clear it.
+	 * 保留保存点之后的写操作并清除保存点
+	 */
+	public void release() {
+		undo = null;
+	}
+
+	@Override
+	public QueryResultsIterator<KeyValue> getStateByRange(String startKey, String endKey) {
+		QueryResultsIterator<KeyValue> results = delegate.getStateByRange(startKey, endKey);
+		return new OverlayIterator(results, null, pendingPuts(key -> !key.startsWith(CompositeKey.NAMESPACE)
+				&& (startKey == null || startKey.isEmpty() || compareKeys(key, startKey) >= 0)
+				&& (endKey == null || endKey.isEmpty() || compareKeys(key, endKey) < 0)));
+	}
+
+	@Override
+	public QueryResultsIteratorWithMetadata<KeyValue> getStateByRangeWithPagination(String startKey, String endKey,
+			int pageSize, String bookmark) {
+		QueryResultsIteratorWithMetadata<KeyValue> page = delegate.getStateByRangeWithPagination(startKey, endKey,
+				pageSize, bookmark);
+		return new OverlayIterator(page, page, Collections.emptyNavigableSet());
+	}
+
+	@Override
+	public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(String compositeKey) {
+		QueryResultsIterator<KeyValue> results = delegate.getStateByPartialCompositeKey(compositeKey);
+		String prefix = compositeKey != null && compositeKey.startsWith(CompositeKey.NAMESPACE) ? compositeKey
+				: new CompositeKey(compositeKey).toString();
+		return new OverlayIterator(results, null, pendingPuts(key -> key.startsWith(prefix)));
+	}
+
+	@Override
+	public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(String objectType, String... attributes) {
+		QueryResultsIterator<KeyValue> results = delegate.getStateByPartialCompositeKey(objectType, attributes);
+		String prefix = createCompositeKey(objectType, attributes).toString();
+		return new OverlayIterator(results, null, pendingPuts(key -> key.startsWith(prefix)));
+	}
+
+	@Override
+	public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(CompositeKey compositeKey) {
+		QueryResultsIterator<KeyValue> results = delegate.getStateByPartialCompositeKey(compositeKey);
+		String prefix = compositeKey.toString();
+		return new OverlayIterator(results, null, pendingPuts(key -> key.startsWith(prefix)));
+	}
+
+	@Override
+	public QueryResultsIteratorWithMetadata<KeyValue> getStateByPartialCompositeKeyWithPagination(
+			CompositeKey compositeKey, int pageSize, String bookmark) {
+		QueryResultsIteratorWithMetadata<KeyValue> page = delegate.getStateByPartialCompositeKeyWithPagination(
+				compositeKey, pageSize, bookmark);
+		return new OverlayIterator(page, page, Collections.emptyNavigableSet());
+	}
+
+	@Override
+	public QueryResultsIterator<KeyValue> getQueryResult(String query) {
+		return new OverlayIterator(delegate.getQueryResult(query), null, Collections.emptyNavigableSet());
+	}
+
+	@Override
+	public QueryResultsIteratorWithMetadata<KeyValue> getQueryResultWithPagination(String query, int pageSize,
+			String bookmark) {
+		QueryResultsIteratorWithMetadata<KeyValue> page = delegate.getQueryResultWithPagination(query, pageSize,
+				bookmark);
+		return new OverlayIterator(page, page, Collections.emptyNavigableSet());
+	}
+
+	/**
+	 * Flush pending writes to the peer.
+	 * 将缓存的写操作提交给 peer
+	 */
+	public void flush() {
+		for (Map.Entry<String, byte[]> write : writes.entrySet()) {
+			if (write.getValue() == null) {
+				delegate.delState(write.getKey());
+			} else {
+				delegate.putState(write.getKey(), write.getValue());
+			}
+		}
+		writes.clear();
+	}
+
+	/**
+	 * 写缓存中范围内待写入的 key，按 UTF-8 字节顺序排列
+	 */
+	private NavigableSet<String> pendingPuts(Predicate<String> inRange) {
+		NavigableSet<String> keys = new TreeSet<>(CachingChaincodeStub::compareKeys);
+		for (Map.Entry<String, byte[]> write : writes.entrySet()) {
+			if (write.getValue() != null && inRange.test(write.getKey())) {
+				keys.add(write.getKey());
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * 本交易视角下 key 的结果：不在写缓存中时返回账本的结果（可能为 null），已删除时返回 null，否则返回写入的值
+	 */
+	private KeyValue visible(String key, KeyValue fromLedger) {
+		if (!writes.containsKey(key)) {
+			return fromLedger;
+		}
+		byte[] value = writes.get(key);
+		return value == null ? null : new PendingKeyValue(key, value);
+	}
+
+	/**
+	 * 按 UTF-8 字节顺序比较 key，与 peer 返回范围扫描结果的顺序一致；按码点比较与按 UTF-8 字节比较结果相同
+	 */
+	static int compareKeys(String left, String right) {
+		int i = 0;
+		int j = 0;
+		while (i < left.length() && j < right.length()) {
+			int a = left.codePointAt(i);
+			int b = right.codePointAt(j);
+			if (a != b) {
+				return Integer.compare(a, b);
+			}
+			i += Character.charCount(a);
+			j += Character.charCount(b);
+		}
+		return Integer.compare(left.length() - i, right.length() - j);
+	}
+
+	private void remember(String key) {
+		if (undo != null && !undo.containsKey(key)) {
+			undo.put(key, writes.containsKey(key) ? writes.get(key) : ABSENT);
+		}
+	}
+
+	/**
+	 * 与 shim 保持一致的 key 校验，使错误在调用处而不是提交时抛出
+	 */
+	private static void validateKey(String key) {
+		if (key == null) {
+			throw new NullPointerException("key cannot be null");
+		}
+		if (key.isEmpty()) {
+			throw new IllegalArgumentException("key cannot not be an empty string");
+		}
+	}
+
+	/**
+	 * 叠加写缓存的查询结果，按 key 顺序合并账本返回的结果和范围内待写入的 key
+	 */
+	private final class OverlayIterator implements QueryResultsIterator<KeyValue>,
+			QueryResultsIteratorWithMetadata<KeyValue> {
+
+		private final Iterable<KeyValue> results;
+
+		private final QueryResultsIteratorWithMetadata<KeyValue> page;
+
+		private final NavigableSet<String> pending;
+
+		private OverlayIterator(Iterable<KeyValue> results, QueryResultsIteratorWithMetadata<KeyValue> page,
+				NavigableSet<String> pending) {
+			this.results = results;
+			this.page = page;
+			this.pending = pending;
+		}
+
+		@Override
+		public Iterator<KeyValue> iterator() {
+			Iterator<KeyValue> ledger = results.iterator();
+			Iterator<String> puts = pending.iterator();
+			return new Iterator<KeyValue>() {
+
+				private KeyValue nextLedger;
+
+				private String nextPut;
+
+				private KeyValue next;
+
+				@Override
+				public boolean hasNext() {
+					if (next == null) {
+						next = advance();
+					}
+					return next != null;
+				}
+
+				@Override
+				public KeyValue next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					KeyValue result = next;
+					next = null;
+					return result;
+				}
+
+				private KeyValue advance() {
+					while (true) {
+						if (nextLedger == null && ledger.hasNext()) {
+							nextLedger = ledger.next();
+						}
+						if (nextPut == null && puts.hasNext()) {
+							nextPut = puts.next();
+						}
+						if (nextLedger == null && nextPut == null) {
+							return null;
+						}
+						int order = nextLedger == null ? 1 : nextPut == null ? -1 : compareKeys(nextLedger.getKey(), nextPut);
+						KeyValue fromLedger = null;
+						String key;
+						if (order <= 0) {
+							fromLedger = nextLedger;
+							key = nextLedger.getKey();
+							nextLedger = null;
+							if (order == 0) {
+								nextPut = null;
+							}
+						} else {
+							key = nextPut;
+							nextPut = null;
+						}
+						KeyValue result = visible(key, fromLedger);
+						if (result != null) {
+							return result;
+						}
+					}
+				}
+			};
+		}
+
+		@Override
+		public QueryResponseMetadata getMetadata() {
+			return page == null ? null : page.getMetadata();
+		}
+
+		@Override
+		public void close() {
+			try {
+				((AutoCloseable) results).close();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ContractRuntimeException("Interrupted while closing query results", e);
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new ContractRuntimeException("Failed to close query results", e);
+			}
+		}
+	}
+
+	/**
+	 * 本交易写入、尚未提交的 key/value
+	 */
+	private static final class PendingKeyValue implements KeyValue {
+
+		private final String key;
+
+		private final byte[] value;
+
+		private PendingKeyValue(String key, byte[] value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+
+		@Override
+		public byte[] getValue() {
+			return value;
+		}
+
+		@Override
+		public String getStringValue() {
+			return new String(value, StandardCharsets.UTF_8);
+		}
+	}
+}
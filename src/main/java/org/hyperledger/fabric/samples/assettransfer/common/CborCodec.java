@@ -0,0 +1,320 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>
+ * The type Cbor codec.
+ * json 与 CBOR（RFC 8949）之间的流式转换，用于以二进制格式保存的表
+ * <p>
+ * 对象和数组使用不定长编码，转换时不需要构建中间树；整数编码为 CBOR 整数，超出 long 范围的整数编码为大整数（tag 2/3），
+ * 小数编码为十进制小数（tag 4），数值不会丢失精度。解码输出紧凑的 json，数字按 BigDecimal 的写法输出
+ */
+final class CborCodec {
+
+	private static final int UNSIGNED = 0;
+
+	private static final int NEGATIVE = 1;
+
+	private static final int BYTES = 2;
+
+	private static final int TEXT = 3;
+
+	private static final int ARRAY = 4;
+
+	private static final int MAP = 5;
+
+	private static final int TAG = 6;
+
+	private static final int SIMPLE = 7;
+
+	private static final int INDEFINITE = 31;
+
+	private static final int BREAK = 0xFF;
+
+	private static final int FALSE = 20;
+
+	private static final int TRUE = 21;
+
+	private static final int NULL = 22;
+
+	private static final int POSITIVE_BIGNUM = 2;
+
+	private static final int NEGATIVE_BIGNUM = 3;
+
+	private static final int DECIMAL_FRACTION = 4;
+
+	private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+
+	private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+	private CborCodec() {
+	}
+
+	/**
+	 * Encode json to CBOR.
+	 *
+	 * @param json the json
+	 * @return the CBOR bytes
+	 */
+	static byte[] fromJson(String json) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(json.length());
+		try {
+			JsonReader in = JsonMerger.newReader(json);
+			encode(in, out);
+			if (in.peek() != JsonToken.END_DOCUMENT) {
+				throw new JsonSyntaxException("JSON document was not fully consumed.");
+			}
+		} catch (IllegalStateException | NumberFormatException e) {
+			throw new JsonSyntaxException(e);
+		} catch (IOException e) {
+			throw new JsonSyntaxException(e);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decode CBOR to json.
+	 *
+	 * @param bytes  the bytes
+	 * @param offset the offset of the CBOR data
+	 * @return the json
+	 */
+	static String toJson(byte[] bytes, int offset) {
+		StringWriter buffer = new StringWriter(bytes.length * 2);
+		JsonWriter out = new JsonWriter(buffer);
+		out.setLenient(true);
+		out.setSerializeNulls(true);
+		try {
+			int[] position = {offset};
+			decode(bytes, position, out);
+			out.flush();
+		} catch (IOException | ArrayIndexOutOfBoundsException | IllegalStateException e) {
+			throw new JsonSyntaxException("Invalid CBOR value", e);
+		}
+		return buffer.toString();
+	}
+
+	private static void encode(JsonReader in, ByteArrayOutputStream out) throws IOException {
+		switch (in.peek()) {
+			case BEGIN_ARRAY:
+				in.beginArray();
+				out.write(ARRAY << 5 | INDEFINITE);
+				while (in.hasNext()) {
+					encode(in, out);
+				}
+				in.endArray();
+				out.write(BREAK);
+				break;
+			case BEGIN_OBJECT:
+				in.beginObject();
+				out.write(MAP << 5 | INDEFINITE);
+				while (in.hasNext()) {
+					writeText(out, in.nextName());
+					encode(in, out);
+				}
+				in.endObject();
+				out.write(BREAK);
+				break;
+			case STRING:
+				writeText(out, in.nextString());
+				break;
+			case NUMBER:
+				writeNumber(out, in.nextString());
+				break;
+			case BOOLEAN:
+				out.write(SIMPLE << 5 | (in.nextBoolean() ? TRUE : FALSE));
+				break;
+			case NULL:
+				in.nextNull();
+				out.write(SIMPLE << 5 | NULL);
+				break;
+			default:
+				throw new IllegalStateException("Unexpected token " + in.peek());
+		}
+	}
+
+	private static void writeNumber(ByteArrayOutputStream out, String literal) {
+		BigDecimal number = new BigDecimal(literal);
+		if (number.scale() <= 0 && literal.indexOf('.') < 0 && literal.indexOf('e') < 0 && literal.indexOf('E') < 0) {
+			writeInteger(out, number.toBigInteger());
+			return;
+		}
+		writeHead(out, TAG, DECIMAL_FRACTION);
+		writeHead(out, ARRAY, 2);
+		writeInteger(out, BigInteger.valueOf(-(long) number.scale()));
+		writeInteger(out, number.unscaledValue());
+	}
+
+	private static void writeInteger(ByteArrayOutputStream out, BigInteger value) {
+		if (value.compareTo(LONG_MIN) >= 0 && value.compareTo(LONG_MAX) <= 0) {
+			long v = value.longValue();
+			if (v >= 0) {
+				writeHead(out, UNSIGNED, v);
+			} else {
+				writeHead(out, NEGATIVE, -1 - v);
+			}
+			return;
+		}
+		boolean negative = value.signum() < 0;
+		byte[] magnitude = (negative ? BigInteger.ONE.negate().subtract(value) : value).toByteArray();
+		int start = magnitude.length > 1 && magnitude[0] == 0 ? 1 : 0;
+		writeHead(out, TAG, negative ? NEGATIVE_BIGNUM : POSITIVE_BIGNUM);
+		writeHead(out, BYTES, magnitude.length - start);
+		out.write(magnitude, start, magnitude.length - start);
+	}
+
+	private static void writeText(ByteArrayOutputStream out, String text) {
+		byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+		writeHead(out, TEXT, utf8.length);
+		out.write(utf8, 0, utf8.length);
+	}
+
+	private static void writeHead(ByteArrayOutputStream out, int major, long value) {
+		int type = major << 5;
+		if (value < 24) {
+			out.write(type | (int) value);
+		} else if (value < 0x100) {
+			out.write(type | 24);
+			out.write((int) value);
+		} else if (value < 0x10000) {
+			out.write(type | 25);
+			writeBytes(out, value, 2);
+		} else if (value < 0x100000000L) {
+			out.write(type | 26);
+			writeBytes(out, value, 4);
+		} else {
+			out.write(type | 27);
+			writeBytes(out, value, 8);
+		}
+	}
+
+	private static void writeBytes(ByteArrayOutputStream out, long value, int length) {
+		for (int i = length - 1; i >= 0; i--) {
+			out.write((int) (value >>> (i * 8)) & 0xFF);
+		}
+	}
+
+	private static void decode(byte[] bytes, int[] position, JsonWriter out) throws IOException {
+		int initial = bytes[position[0]++] & 0xFF;
+		int major = initial >>> 5;
+		int info = initial & 0x1F;
+		switch (major) {
+			case UNSIGNED:
+				out.value(readHead(bytes, position, info));
+				break;
+			case NEGATIVE:
+				out.value(-1 - readHead(bytes, position, info));
+				break;
+			case TEXT:
+				int length = (int) readHead(bytes, position, info);
+				out.value(new String(bytes, position[0], length, StandardCharsets.UTF_8));
+				position[0] += length;
+				break;
+			case ARRAY:
+				out.beginArray();
+				long items = info == INDEFINITE ? -1 : readHead(bytes, position, info);
+				for (long i = 0; items < 0 ? (bytes[position[0]] & 0xFF) != BREAK : i < items; i++) {
+					decode(bytes, position, out);
+				}
+				if (items < 0) {
+					position[0]++;
+				}
+				out.endArray();
+				break;
+			case MAP:
+				out.beginObject();
+				long entries = info == INDEFINITE ? -1 : readHead(bytes, position, info);
+				for (long i = 0; entries < 0 ? (bytes[position[0]] & 0xFF) != BREAK : i < entries; i++) {
+					out.name(readText(bytes, position));
+					decode(bytes, position, out);
+				}
+				if (entries < 0) {
+					position[0]++;
+				}
+				out.endObject();
+				break;
+			case TAG:
+				out.jsonValue(readTagged(bytes, position, readHead(bytes, position, info)).toString());
+				break;
+			case SIMPLE:
+				if (info == TRUE || info == FALSE) {
+					out.value(info == TRUE);
+				} else if (info == NULL) {
+					out.nullValue();
+				} else {
+					throw new IllegalStateException("Unsupported CBOR simple value " + info);
+				}
+				break;
+			default:
+				throw new IllegalStateException("Unsupported CBOR major type " + major);
+		}
+	}
+
+	private static Object readTagged(byte[] bytes, int[] position, long tag) {
+		if (tag == POSITIVE_BIGNUM || tag == NEGATIVE_BIGNUM) {
+			int initial = bytes[position[0]++] & 0xFF;
+			int length = (int) readHead(bytes, position, initial & 0x1F);
+			byte[] magnitude = new byte[length];
+			System.arraycopy(bytes, position[0], magnitude, 0, length);
+			position[0] += length;
+			BigInteger value = new BigInteger(1, magnitude);
+			return tag == POSITIVE_BIGNUM ? value : BigInteger.ONE.negate().subtract(value);
+		}
+		if (tag == DECIMAL_FRACTION) {
+			position[0]++;
+			BigInteger exponent = readInteger(bytes, position);
+			BigInteger mantissa = readInteger(bytes, position);
+			return new BigDecimal(mantissa, -exponent.intValueExact());
+		}
+		throw new IllegalStateException("Unsupported CBOR tag " + tag);
+	}
+
+	private static BigInteger readInteger(byte[] bytes, int[] position) {
+		int initial = bytes[position[0]] & 0xFF;
+		int major = initial >>> 5;
+		if (major == TAG) {
+			position[0]++;
+			return (BigInteger) readTagged(bytes, position, readHead(bytes, position, initial & 0x1F));
+		}
+		position[0]++;
+		long value = readHead(bytes, position, initial & 0x1F);
+		return major == UNSIGNED ? BigInteger.valueOf(value) : BigInteger.valueOf(-1 - value);
+	}
+
+	private static String readText(byte[] bytes, int[] position) {
+		int initial = bytes[position[0]++] & 0xFF;
+		if (initial >>> 5 != TEXT) {
+			throw new IllegalStateException("CBOR map key must be text");
+		}
+		int length = (int) readHead(bytes, position, initial & 0x1F);
+		String text = new String(bytes, position[0], length, StandardCharsets.UTF_8);
+		position[0] += length;
+		return text;
+	}
+
+	private static long readHead(byte[] bytes, int[] position, int info) {
+		if (info < 24) {
+			return info;
+		}
+		int length = info == 24 ? 1 : info == 25 ? 2 : info == 26 ? 4 : info == 27 ? 8 : -1;
+		if (length < 0) {
+			throw new IllegalStateException("Unsupported CBOR additional info " + info);
+		}
+		long value = 0;
+		for (int i = 0; i < length; i++) {
+			value = value << 8 | (bytes[position[0]++] & 0xFF);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,195 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.hyperledger.fabric.contract.ContractRuntimeException;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * The type Chunked values.
+ * 大数据的分块保存：编码后超过表配置 chunkBytes 的数据按顺序拆分到 chunk~type~key~index 中，
+ * 主键上只保存清单 {"size":总字节数,"chunks":块数,"chunkBytes":块大小,"sha256":摘要,"binary":是否为压缩或 CBOR 等二进制编码}
+ * <p>
+ * 读取时按清单逐块读取并拼接，校验 SHA-256 后再解码；json 文本数据可以只读取需要的块获取字节片段。
+ * 历史记录中的分块数据只能看到清单，块的历史版本不会被重新拼接
+ */
+public final class ChunkedValues {
+
+	private static final String CHUNK = "chunk~type~key~index";
+
+	private static final String SIZE = "size";
+
+	private static final String CHUNKS = "chunks";
+
+	private static final String CHUNK_BYTES = "chunkBytes";
+
+	private static final String SHA256 = "sha256";
+
+	private static final String BINARY = "binary";
+
+	private ChunkedValues() {
+	}
+
+	/**
+	 * Write the encoded value, splitting it into chunks when larger than chunkBytes.
+	 * 写入的块数少于旧清单时删除多余的旧块
+	 *
+	 * @param stub       the stub
+	 * @param type       the type
+	 * @param key        the key
+	 * @param encoded    the encoded value
+	 * @param chunkBytes the chunk bytes
+	 * @param previous   the previously stored bytes of the primary key
+	 * @return the bytes to store on the primary key
+	 */
+	public static byte[] write(ChaincodeStub stub, String type, String key, byte[] encoded, int chunkBytes,
+			byte[] previous) {
+		int previousChunks = ValueCodec.isChunked(previous) ? manifest(previous).get(CHUNKS).getAsInt() : 0;
+		if (encoded.length <= chunkBytes) {
+			deleteChunks(stub, type, key, 0, previousChunks);
+			return encoded;
+		}
+		int chunks = (encoded.length + chunkBytes - 1) / chunkBytes;
+		for (int i = 0; i < chunks; i++) {
+			int from = i * chunkBytes;
+			stub.putState(chunkKey(stub, type, key, i),
+					Arrays.copyOfRange(encoded, from, Math.min(encoded.length, from + chunkBytes)));
+		}
+		deleteChunks(stub, type, key, chunks, previousChunks);
+		JsonObject manifest = new JsonObject();
+		manifest.addProperty(SIZE, encoded.length);
+		manifest.addProperty(CHUNKS, chunks);
+		manifest.addProperty(CHUNK_BYTES, chunkBytes);
+		manifest.addProperty(SHA256, sha256(encoded));
+		manifest.addProperty(BINARY, !ValueCodec.isText(encoded));
+		return ValueCodec.manifest(manifest.toString());
+	}
+
+	/**
+	 * Reassemble the encoded value when the stored bytes are a manifest.
+	 *
+	 * @param stub   the stub
+	 * @param type   the type
+	 * @param key    the key
+	 * @param stored the stored bytes of the primary key
+	 * @return the encoded value
+	 */
+	public static byte[] read(ChaincodeStub stub, String type, String key, byte[] stored) {
+		if (!ValueCodec.isChunked(stored)) {
+			return stored;
+		}
+		JsonObject manifest = manifest(stored);
+		byte[] encoded = new byte[manifest.get(SIZE).getAsInt()];
+		int chunks = manifest.get(CHUNKS).getAsInt();
+		int offset = 0;
+		for (int i = 0; i < chunks; i++) {
+			byte[] chunk = stub.getState(chunkKey(stub, type, key, i));
+			if (chunk == null || offset + chunk.length > encoded.length) {
+				throw new ContractRuntimeException("Corrupted chunked value of " + type + " " + key);
+			}
+			System.arraycopy(chunk, 0, encoded, offset, chunk.length);
+			offset += chunk.length;
+		}
+		if (offset != encoded.length || !sha256(encoded).equals(manifest.get(SHA256).getAsString())) {
+			throw new ContractRuntimeException("Corrupted chunked value of " + type + " " + key);
+		}
+		return encoded;
+	}
+
+	/**
+	 * Read a byte range of the value, only the needed chunks are read when the value is json text.
+	 *
+	 * @param stub   the stub
+	 * @param type   the type
+	 * @param key    the key
+	 * @param stored the stored bytes of the primary key
+	 * @param offset the offset
+	 * @param length the length
+	 * @return the bytes, shorter than length at the end of the value
+	 */
+	public static byte[] range(ChaincodeStub stub, String type, String key, byte[] stored, long offset, int length) {
+		if (!ValueCodec.isChunked(stored) || manifest(stored).get(BINARY).getAsBoolean()) {
+			byte[] value = ValueCodec.decode(read(stub, type, key, stored)).getBytes(StandardCharsets.UTF_8);
+			return slice(value, offset, length);
+		}
+		JsonObject manifest = manifest(stored);
+		long size = manifest.get(SIZE).getAsLong();
+		int chunkBytes = manifest.get(CHUNK_BYTES).getAsInt();
+		long end = Math.min(size, offset + length);
+		if (offset >= end) {
+			return new byte[0];
+		}
+		byte[] result = new byte[(int) (end - offset)];
+		for (int i = (int) (offset / chunkBytes); (long) i * chunkBytes < end; i++) {
+			byte[] chunk = stub.getState(chunkKey(stub, type, key, i));
+			long chunkStart = (long) i * chunkBytes;
+			long from = Math.max(offset, chunkStart);
+			if (chunk == null || from >= Math.min(end, chunkStart + chunk.length)) {
+				throw new ContractRuntimeException("Corrupted chunked value of " + type + " " + key);
+			}
+			long to = Math.min(end, chunkStart + chunk.length);
+			System.arraycopy(chunk, (int) (from - chunkStart), result, (int) (from - offset), (int) (to - from));
+		}
+		return result;
+	}
+
+	/**
+	 * Delete the chunks of the stored value.
+	 *
+	 * @param stub   the stub
+	 * @param type   the type
+	 * @param key    the key
+	 * @param stored the stored bytes of the primary key
+	 */
+	public static void delete(ChaincodeStub stub, String type, String key, byte[] stored) {
+		if (ValueCodec.isChunked(stored)) {
+			deleteChunks(stub, type, key, 0, manifest(stored).get(CHUNKS).getAsInt());
+		}
+	}
+
+	private static void deleteChunks(ChaincodeStub stub, String type, String key, int from, int to) {
+		for (int i = from; i < to; i++) {
+			stub.delState(chunkKey(stub, type, key, i));
+		}
+	}
+
+	private static String chunkKey(ChaincodeStub stub, String type, String key, int index) {
+		return stub.createCompositeKey(CHUNK, type, key, String.format("%06d", index)).toString();
+	}
+
+	private static JsonObject manifest(byte[] stored) {
+		try {
+			return JsonParser.parseString(ValueCodec.decode(stored)).getAsJsonObject();
+		} catch (JsonParseException | IllegalStateException e) {
+			throw new ContractRuntimeException("Invalid chunk manifest", e);
+		}
+	}
+
+	private static byte[] slice(byte[] value, long offset, int length) {
+		long end = Math.min(value.length, offset + length);
+		if (offset >= end) {
+			return new byte[0];
+		}
+		return Arrays.copyOfRange(value, (int) offset, (int) end);
+	}
+
+	static String sha256(byte[] bytes) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+			StringBuilder hex = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new ContractRuntimeException("SHA-256 not available", e);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+/**
+ * <p>
+ * The type Common context.
+ * CommonContract 的交易上下文，getStub() 返回带交易级缓存的 stub，缓存之下由 {@link CountingChaincodeStub} 统计对 peer 的访问
+ */
+public class CommonContext extends Context {
+
+	/**
+	 * Cache
+	 */
+	private final CachingChaincodeStub cache;
+
+	/**
+	 * 世界状态访问计数
+	 */
+	private final CountingChaincodeStub counter;
+
+	/**
+	 * 交易方法开始执行的时间
+	 */
+	private long startNanos = System.nanoTime();
+
+	/**
+	 * 本交易内的写入序号，用于区分同一交易中的多条增量记录
+	 */
+	private int sequence;
+
+	/**
+	 * Common context
+	 *
+	 * @param stub stub
+	 */
+	public CommonContext(ChaincodeStub stub) {
+		this(new CountingChaincodeStub(stub));
+	}
+
+	private CommonContext(CountingChaincodeStub counter) {
+		this(new CachingChaincodeStub(counter), counter);
+	}
+
+	private CommonContext(CachingChaincodeStub cache, CountingChaincodeStub counter) {
+		super(cache);
+		this.cache = cache;
+		this.counter = counter;
+	}
+
+	/**
+	 * Mark the start of the transaction function.
+	 */
+	public void start() {
+		startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Nanos elapsed since {@link #start()}.
+	 *
+	 * @return the nanos
+	 */
+	public long elapsedNanos() {
+		return System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * Gets the state access counters of this transaction.
+	 *
+	 * @return the counter
+	 */
+	public CountingChaincodeStub getCounter() {
+		return counter;
+	}
+
+	/**
+	 * Flush pending writes to the peer.
+	 */
+	public void flush() {
+		cache.flush();
+	}
+
+	/**
+	 * Next sequence in this transaction.
+	 *
+	 * @return the sequence
+	 */
+	public int nextSequence() {
+		return sequence++;
+	}
+}
@@ -1,7 +1,11 @@
 package org.hyperledger.fabric.samples.assettransfer.common;
 
-import com.google.gson.Gson;
-import org.hyperledger.fabric.Logger;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.everit.json.schema.Schema;
 import org.hyperledger.fabric.contract.Context;
 import org.hyperledger.fabric.contract.ContractInterface;
 import org.hyperledger.fabric.contract.ContractRuntimeException;
@@ -10,7 +14,7 @@ import org.hyperledger.fabric.protos.peer.ChaincodeShim.QueryResponseMetadata;
 import org.hyperledger.fabric.shim.ChaincodeStub;
 import org.hyperledger.fabric.shim.ledger.*;
 
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
 
@@ -41,7 +45,17 @@ public class CommonContract implements ContractInterface {
     /**
      * log
      */
-    private static final Logger log = Logger.getLogger(CommonContract.class);
+    private static final ContractLogger log = ContractLogger.getLogger(CommonContract.class);
+
+    /**
+     * 链码打包的 CouchDB 索引，用于检查查询语句是否命中索引
+     */
+    private static final QueryIndexAdvisor INDEX_ADVISOR = QueryIndexAdvisor.load();
+
+    /**
+     * 按交易方法统计的耗时和世界状态访问指标
+     */
+    private static final ContractMetrics METRICS = ContractMetrics.create();
     /**
      * OBJECT_TYPE 组合key（联合主键）
      */
@@ -53,6 +67,86 @@ public class CommonContract implements ContractInterface {
 
     private static final String JSON_STRING = "{";
 
+    /**
+     * 累加状态增量的组合key，upsert 不读取累加状态，只追加一条增量，读取时再按时间顺序合并
+     */
+    private static final String ACCUMULATED_DELTA = "delta~type~key~timestamp~txId~seq";
+
+    /**
+     * upsert 使用的建表标记，独立于 table~type，避免读取和覆盖表记录
+     */
+    private static final String UPSERT_TABLE_MARKER = "upsert~type";
+
+    /**
+     * 记录数计数器的组合key，每笔交易对每张表写一个增量分片，避免并发交易在同一个 key 上产生 MVCC 冲突
+     */
+    private static final String COUNTER = "counter~type~txId";
+
+    /**
+     * 计数器压缩后的检查点分片
+     */
+    private static final String COUNTER_CHECKPOINT = "checkpoint";
+
+    /**
+     * 二级索引 key，值为单个 0x00 字节（空值会被 peer 视为删除）
+     */
+    private static final String INDEX = "idx~type~field~value~key";
+
+    private static final byte[] INDEX_VALUE = {0};
+
+    /**
+     * 表注册的 JSON Schema，表记录中保存其 schemaHash
+     */
+    private static final String SCHEMA = "schema~type";
+
+    /**
+     * 命名的查询模板
+     */
+    private static final String QUERY_TEMPLATE = "query~name";
+
+    /**
+     * Create context
+     * 为每笔交易创建带世界状态缓存的上下文
+     *
+     * @param stub the stub
+     * @return the context
+     */
+    @Override
+    public Context createContext(ChaincodeStub stub) {
+        return new CommonContext(stub);
+    }
+
+    /**
+     * Before transaction
+     * 交易方法执行前开始计时
+     *
+     * @param context the context
+     */
+    @Override
+    public void beforeTransaction(Context context) {
+        if (context instanceof CommonContext) {
+            ((CommonContext) context).start();
+        }
+    }
+
+    /**
+     * After transaction
+     * 交易方法执行成功后提交缓存的写操作，并记录本交易的耗时和世界状态访问指标
+     *
+     * @param context the context
+     * @param result  the result
+     */
+    @Override
+    public void afterTransaction(Context context, Object result) {
+        if (context instanceof CommonContext) {
+            CommonContext commonContext = (CommonContext) context;
+            commonContext.flush();
+            String function = context.getStub().getFunction();
+            function = function == null ? "" : function.substring(function.lastIndexOf(':') + 1);
+            METRICS.record(function, commonContext.elapsedNanos(), commonContext.getCounter());
+        }
+    }
+
     /**
      * Initialize
      *
@@ -84,47 +178,13 @@ public class CommonContract implements ContractInterface {
      */
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     public Boolean create(Context context, String type, String key, String value) {
-        log.info("CommonContract.create: type=" + type + ", key=" + key + ", value=" + value);
+        log.info("create", () -> "CommonContract.create: type=" + type + ", key=" + key + ", value="
+                + ContractLogger.truncate(value));
         if (type == null || key == null) {
             throw new ContractRuntimeException("Incorrect number of arguments. Expecting 3 [type, key, value]");
         }
 
-        ChaincodeStub stub = context.getStub();
-        String compositeKey = getCompositeKey(stub, type, key);
-        if (value == null) {
-            return Boolean.FALSE;
-        }
-        //获取前一个世界状态,更新累加状态
-        String addKey = getCompositeKey(stub, type + TYPE_ADD_SUFFIX, key);
-        String stringState = stub.getStringState(addKey);
-        log.info("old value:" + stringState);
-        log.info("new value: " + value);
-        String newValue = value;
-        Gson gson = new Gson();
-        Map map = gson.fromJson(newValue, Map.class);
-        map.put("type",type + TYPE_ADD_SUFFIX);
-        newValue = gson.toJson(map);
-        if (Objects.nonNull(stringState) && !stringState.isEmpty()){
-            Map oldMap = gson.fromJson(stringState, Map.class);
-            Map newMap = gson.fromJson(value, Map.class);
-            newMap.forEach(oldMap::put);
-            oldMap.put("type",type + TYPE_ADD_SUFFIX);
-            newValue = gson.toJson(oldMap);
-        }
-        stub.delState(addKey);
-        stub.putStringState(addKey, newValue);
-        log.info("CommonContract.create: compositeKey=" + compositeKey);
-        log.info("CommonContract.create: value=" + value);
-        stub.putStringState(compositeKey, value);
-        String tableKey = getCompositeTableKey(stub, type);
-        byte[] table = stub.getState(tableKey);
-        //如果表不存在则创建表
-        if (table == null || table.length < 1) {
-            String tableString = "{\"tableName\":\"" + type + "\",\"type\":\"" + TABLE + "\"}";
-            stub.putStringState(tableKey, tableString);
-        }
-
-        return Boolean.TRUE;
+        return createRecord(context.getStub(), type, key, value, new HashSet<>());
     }
 
     /**
@@ -142,31 +202,257 @@ public class CommonContract implements ContractInterface {
      */
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public String get(Context context, String type, String key) {
-        log.info("CommonContract.get: type=" + type + ", key=" + key);
+        log.info("get", () -> "CommonContract.get: type=" + type + ", key=" + key);
         if (type == null || key == null) {
             throw new ContractRuntimeException("Incorrect number of arguments. At least 2 [type, key, ...]");
         }
 
         ChaincodeStub stub = context.getStub();
         String compositeKey = getCompositeKey(stub, type, key);
-        log.info("CommonContract.get: compositeKey=" + compositeKey);
-        byte[] bytes = stub.getState(compositeKey);
-        Map<String, Object> map = new HashMap<>(16);
-        if (bytes == null || bytes.length < 1) {
+        log.debug(() -> "CommonContract.get: compositeKey=" + compositeKey);
+        String value = readValue(stub, type, key);
+        if (value == null || value.isEmpty()) {
             return null;
         }
-        String strUtf8 = null;
-        try {
-            strUtf8 = new String(bytes, "utf8");
-            Gson gson = new Gson();
-            Object json = gson.fromJson(strUtf8, Object.class);
-            map.put("id", key);
-            map.put("type", type);
-            map.put("values", json);
-        } catch (UnsupportedEncodingException e) {
-            log.error("get 编码失败");
+        return JsonUtil.stringify(toRecord(type, key, value));
+    }
+
+    /**
+     * Load one object with the stored json embedded verbatim.
+     * 在区块链上加载一条数据，返回结构与 get 相同，但 values 为账本中存储的原始 json，不经过解析和再序列化
+     *
+     * @param context the context 智能合约上下文
+     * @param type    the type 表名
+     * @param key     the key 数据表中记录的唯一标识
+     * @return Chaincode.Response String
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"getRaw","Args":["user","10001"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String getRaw(Context context, String type, String key) {
+        log.info("getRaw", () -> "CommonContract.getRaw: type=" + type + ", key=" + key);
+        if (type == null || key == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. At least 2 [type, key, ...]");
+        }
+        ChaincodeStub stub = context.getStub();
+        String value = readValue(stub, type, key);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        return JsonUtil.rawRecord(type, key, value);
+    }
+
+    /**
+     * Load a byte range of one object.
+     * 在区块链上加载一条数据的 UTF-8 字节片段，返回 base64 编码的字节
+     * <p>
+     * 对于分块保存且未压缩的数据只读取片段所在的块，其他数据需要完整读取后再截取
+     *
+     * @param context the context 智能合约上下文
+     * @param type    the type 表名
+     * @param key     the key 数据表中记录的唯一标识
+     * @param offset  the offset 起始字节
+     * @param length  the length 字节数，超出数据末尾时返回剩余的字节
+     * @return Chaincode.Response String base64 编码的字节片段，数据不存在时返回 null
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"getRange","Args":["file","10001","0","65536"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String getRange(Context context, String type, String key, Long offset, Integer length) {
+        log.info("getRange", () -> "CommonContract.getRange: type=" + type + ", key=" + key + ", offset=" + offset
+                + ", length=" + length);
+        if (type == null || key == null || offset == null || length == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. Expecting 4 [type, key, offset, length]");
+        }
+        if (offset < 0 || length < 0) {
+            throw new ContractRuntimeException("Offset and length must not be negative");
+        }
+        ChaincodeStub stub = context.getStub();
+        byte[] stored = stub.getState(getCompositeKey(stub, type, key));
+        if (isEmpty(stored)) {
+            return null;
+        }
+        return Base64.getEncoder().encodeToString(ChunkedValues.range(stub, type, key, stored, offset, length));
+    }
+
+    /**
+     * Load the selected fields of one object.
+     * 在区块链上加载一条数据的部分字段，返回结构与 getRaw 相同，values 只包含选中的字段
+     * <p>
+     * 字段在链码内流式裁剪，未选中的字段不会被解析和序列化
+     *
+     * @param context the context 智能合约上下文
+     * @param type    the type 表名
+     * @param key     the key 数据表中记录的唯一标识
+     * @param fields  the fields 字段路径的 json 数组，嵌套字段用 "." 分隔，如 ["name","address.city"]
+     * @return Chaincode.Response String
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"getFields","Args":["user","10001","[\"name\",\"address.city\"]"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String getFields(Context context, String type, String key, String fields) {
+        log.info("getFields", () -> "CommonContract.getFields: type=" + type + ", key=" + key + ", fields="
+                + ContractLogger.truncate(fields));
+        if (type == null || key == null || fields == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. Expecting 3 [type, key, fields]");
+        }
+        List<String> paths = new ArrayList<>();
+        for (JsonElement field : parseFields(fields)) {
+            paths.add(field.getAsString());
+        }
+        ChaincodeStub stub = context.getStub();
+        String value = readValue(stub, type, key);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        return JsonUtil.rawRecord(type, key, JsonMerger.project(value, paths));
+    }
+
+    /**
+     * Load the accumulated view of one object.
+     * 加载一条数据的累加状态（_combination@~type），按表配置的 accumulate 模式读取
+     * <p>
+     * always 模式读取已保存的累加状态并合并 upsert 追加的增量；history 模式根据数据的历史记录实时计算；never 模式不支持
+     *
+     * @param context the context 智能合约上下文
+     * @param type    the type 表名
+     * @param key     the key 数据表中记录的唯一标识
+     * @return Chaincode.Response String 累加状态 json，不存在时返回 null
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"getAccumulated","Args":["user","10001"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String getAccumulated(Context context, String type, String key) {
+        log.info("getAccumulated", () -> "CommonContract.getAccumulated: type=" + type + ", key=" + key);
+        if (type == null || key == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. At least 2 [type, key, ...]");
+        }
+        ChaincodeStub stub = context.getStub();
+        TableConfig table = loadTable(stub, type);
+        if (table.getAccumulate() == TableConfig.AccumulateMode.NEVER) {
+            throw new ContractRuntimeException("Accumulated view is disabled for type " + type);
+        }
+        return readAccumulated(stub, table, type, key);
+    }
+
+    /**
+     * Configure table of type.
+     * 修改表配置，配置以 json 合并补丁的方式写入 table~type 记录，tableName 和 type 字段不可修改
+     * <p>
+     * 支持的配置：accumulate 累加状态维护方式，always（默认，写入时合并保存）/ never（不维护）/ history（读取时根据历史记录计算）。
+     * 修改 accumulate 不会删除已保存的累加状态。
+     * indexes 为合约维护的二级索引字段列表，如 ["status","ownerId"]，新增索引后需通过 listKeys 分页取得 key，再调用 rebuildIndex 为已有数据补建索引
+     * codec 为数据的存储压缩方式 none/deflate/gzip（codecMinBytes 以下不压缩），只适用于不参与 rich query 的表，读取时自动解压
+     * chunkBytes 为分块保存的阈值（默认 0 不分块），编码后超过该字节数的数据拆分为多个块保存，可通过 getRange 读取字节片段；
+     * 分块保存的数据在历史记录中只有分块清单，不能与 accumulate=history 同时使用；history/historyPage/latestN 中分块保存的版本
+     * value 为空、chunked 为 true，getAsOf/queryAsOf 读到分块保存的值时报错
+     * format 为数据的保存格式 json（默认）/ cbor，cbor 格式的数据更小，同样只适用于不参与 rich query 的表，读取时转换为 json
+     * counter 为是否维护记录数计数器（默认 false），开启后需调用 seedCounter 按已有数据初始化，初始化之后 create/update/delete
+     * 才会额外读取主键并维护计数器；关闭后再开启需要重新初始化
+     *
+     * @param context the context 智能合约上下文
+     * @param type    the type 表名
+     * @param config  the config json 合并补丁，如 {"accumulate":"history"}
+     * @return Chaincode.Response String 修改后的表记录
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode invoke -o localhost:7050 -C mychannel -n basic -c '{"function":"configureTable","Args":["user","{\"accumulate\":\"history\"}"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String configureTable(Context context, String type, String config) {
+        log.info("configureTable", () -> "CommonContract.configureTable: type=" + type + ", config="
+                + ContractLogger.truncate(config));
+        if (type == null || config == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. Expecting 2 [type, config]");
+        }
+        ChaincodeStub stub = context.getStub();
+        TableConfig table = loadTable(stub, type).apply(config);
+        stub.putStringState(getCompositeTableKey(stub, type), table.toJson());
+        return table.toJson();
+    }
+
+    /**
+     * Register the JSON schema of type.
+     * 为表注册 JSON Schema（draft 4/6/7），之后 create/update/patch 及对应的批量交易写入前按 schema 校验数据，校验失败时交易报错
+     * <p>
+     * schema 保存在 schema~type 中，表记录的 schemaHash 为其 SHA-256；各链码进程按 schemaHash 缓存编译后的 schema，
+     * 只在缓存未命中时读取并编译。schema 为空字符串时删除已注册的 schema。注册不会校验已有数据；upsert 不读取表配置，不做校验。
+     * 只允许文档内的 $ref（如 #/definitions/address），引用外部 schema 时注册失败
+     *
+     * @param context the context 智能合约上下文
+     * @param type    the type 表名
+     * @param schema  the schema json，如 {"type":"object","required":["id"],"properties":{"age":{"type":"integer","minimum":0}}}
+     * @return Chaincode.Response String 修改后的表记录
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode invoke -o localhost:7050 -C mychannel -n basic -c '{"function":"registerSchema","Args":["user","{\"type\":\"object\",\"required\":[\"id\"]}"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String registerSchema(Context context, String type, String schema) {
+        log.info("registerSchema", () -> "CommonContract.registerSchema: type=" + type + ", schema="
+                + ContractLogger.truncate(schema));
+        if (type == null || schema == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. Expecting 2 [type, schema]");
+        }
+        ChaincodeStub stub = context.getStub();
+        String schemaKey = stub.createCompositeKey(SCHEMA, type).toString();
+        TableConfig table;
+        if (schema.isEmpty()) {
+            stub.delState(schemaKey);
+            table = loadTable(stub, type).withSchema(null);
+        } else {
+            String hash = SchemaValidator.register(schema);
+            stub.putStringState(schemaKey, schema);
+            table = loadTable(stub, type).withSchema(hash);
+        }
+        stub.putStringState(getCompositeTableKey(stub, type), table.toJson());
+        return table.toJson();
+    }
+
+    /**
+     * Load many objects of type in one call.
+     * 一次加载一张表中的多条数据，返回结构与 get 相同的 json 数组，不存在的 key 不返回
+     * <p>
+     * 当前 shim 版本没有批量读取接口，每个 key 仍单独读取一次世界状态，重复的 key 只读取一次
+     *
+     * @param context            the context 智能合约上下文
+     * @param type               the type 表名
+     * @param keys               the keys json 数组，如 ["10001","10002"]
+     * @param includeAccumulated the include accumulated ，是否同时返回累加状态（_combination@~type），放在 accumulated 属性中
+     * @return Chaincode.Response String
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"getMany","Args":["user","[\"10001\",\"10002\"]","false"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String getMany(Context context, String type, String keys, Boolean includeAccumulated) {
+        log.info("getMany", () -> "CommonContract.getMany: type=" + type + ", keys=" + ContractLogger.truncate(keys)
+                + ", includeAccumulated=" + includeAccumulated);
+        if (type == null || keys == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. At least 2 [type, keys, ...]");
+        }
+        Set<String> distinctKeys = new LinkedHashSet<>();
+        for (JsonElement key : parseBatch(keys)) {
+            if (key.isJsonPrimitive()) {
+                distinctKeys.add(key.getAsString());
+            }
+        }
+        ChaincodeStub stub = context.getStub();
+        boolean accumulated = Boolean.TRUE.equals(includeAccumulated);
+        TableConfig table = accumulated ? loadTable(stub, type) : null;
+        List<Map<String, Object>> records = new ArrayList<>(distinctKeys.size());
+        for (String key : distinctKeys) {
+            String value = readValue(stub, type, key);
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+            Map<String, Object> record = toRecord(type, key, value);
+            if (accumulated) {
+                String addValue = readAccumulated(stub, table, type, key);
+                if (addValue != null && !addValue.isEmpty()) {
+                    record.put("accumulated", JsonUtil.parse(addValue));
+                }
+            }
+            records.add(record);
         }
-        return JsonUtil.stringify(map);
+        return JsonUtil.stringify(records);
     }
 
     /**
@@ -185,40 +471,75 @@ public class CommonContract implements ContractInterface {
      */
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     public Boolean update(Context context, String type, String key, String value) {
-        log.info("CommonContract.update: type=" + type + ", key=" + key + ", value=" + value);
+        log.info("update", () -> "CommonContract.update: type=" + type + ", key=" + key + ", value="
+                + ContractLogger.truncate(value));
         if (type == null || key == null) {
             throw new ContractRuntimeException("Incorrect number of arguments. Expecting 3 [type, key, value]");
         }
-        ChaincodeStub stub = context.getStub();
-        String compositeKey = getCompositeKey(stub, type, key);
-        byte[] resp = stub.getState(compositeKey);
-        if (resp == null) {
-            return Boolean.FALSE;
-        }
-        //获取前一个世界状态,更新累加状态
-        String addKey = getCompositeKey(stub, type + TYPE_ADD_SUFFIX, key);
-        String stringState = stub.getStringState(addKey);
-        log.info("old value:" + stringState);
-        log.info("new value: " + value);
-        String newValue = value;
-        Gson gson = new Gson();
-        Map map = gson.fromJson(newValue, Map.class);
-        map.put("type",type + TYPE_ADD_SUFFIX);
-        newValue = gson.toJson(map);
-        if (Objects.nonNull(stringState) && !stringState.isEmpty()){
-            Map oldMap = gson.fromJson(stringState, Map.class);
-            Map newMap = gson.fromJson(value, Map.class);
-            newMap.forEach(oldMap::put);
-            oldMap.put("type",type + TYPE_ADD_SUFFIX);
-            newValue = gson.toJson(oldMap);
+        return updateRecord(context.getStub(), type, key, value);
+    }
+
+    /**
+     * Patch object with a JSON Merge Patch (RFC 7386).
+     * 使用 json 合并补丁更新一条数据，只需传入变化的字段，补丁同时作用于数据本身和累加状态
+     * <p>
+     * 补丁规则：字段值为 null 表示删除该字段，值为对象时递归合并，其他值直接替换。数据不存在时返回 false
+     *
+     * @param context the context 智能合约上下文
+     * @param type    the type 表名
+     * @param key     the key 数据表中记录的唯一标识
+     * @param patch   the patch json 合并补丁，如 {"age":19,"nickname":null,"address":{"city":"长沙"}}
+     * @return Chaincode.Response boolean
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode invoke -o localhost:7050 -C mychannel -n basic -c '{"function":"patch","Args":["user","10001","{\"age\":19}"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Boolean patch(Context context, String type, String key, String patch) {
+        log.info("patch", () -> "CommonContract.patch: type=" + type + ", key=" + key + ", patch="
+                + ContractLogger.truncate(patch));
+        if (type == null || key == null || patch == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. Expecting 3 [type, key, patch]");
         }
-        stub.delState(addKey);
-        stub.delState(compositeKey);
-        if (value == null) {
-            return Boolean.FALSE;
+        return patchRecord(context.getStub(), type, key, patch);
+    }
+
+    /**
+     * Upsert object without reading any state.
+     * 无读写入一条数据：不读取任何世界状态，并发写同一条数据或同一张表时不会产生 MVCC_READ_CONFLICT
+     * <p>
+     * 数据本身直接覆盖写入；累加状态不在写入时合并，而是追加一条按交易时间排序的增量记录，
+     * 在下一次 create/update/patch 或读取累加状态时再按顺序合并；建表时写入独立的建表标记，不读取 table~type 记录，
+     * 表记录在该表下一次 create/update/patch/delete 时补写。只有存在建表标记的表在写入和读取累加状态时才扫描增量记录。
+     * 由于不读取数据，upsert 不维护记录数计数器，开启了计数器的表应使用 create/update；也不读取表配置，累加状态为 never/history 模式时增量不会被使用，
+     * 在下一次 create/update/patch/delete 时清理；同理 upsert 不维护二级索引、不按注册的 schema 校验、不清理旧值的分块，声明了索引、schema 或 chunkBytes 的表应使用 create/update
+     *
+     * @param context the context 智能合约上下文
+     * @param type    the type 表名
+     * @param key     the key 数据表中记录的唯一标识
+     * @param value   the value 一条格式为 json String 的记录信息
+     * @return Chaincode.Response boolean
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode invoke -o localhost:7050 -C mychannel -n basic -c '{"function":"upsert","Args":["user","10001","{\"username\":\"pandau\"}"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Boolean upsert(Context context, String type, String key, String value) {
+        log.info("upsert", () -> "CommonContract.upsert: type=" + type + ", key=" + key + ", value="
+                + ContractLogger.truncate(value));
+        if (type == null || key == null || value == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. Expecting 3 [type, key, value]");
         }
-        stub.putStringState(compositeKey, value);
-        stub.putStringState(addKey, newValue);
+        ChaincodeStub stub = context.getStub();
+        //提前校验 value 为 json 对象，避免增量在读取时才合并失败
+        JsonMerger.merge(null, value, type + TYPE_ADD_SUFFIX);
+        int sequence = context instanceof CommonContext ? ((CommonContext) context).nextSequence() : 0;
+        Instant timestamp = stub.getTxTimestamp();
+        long nanos = timestamp.getEpochSecond() * 1000000000L + timestamp.getNano();
+        String deltaKey = stub.createCompositeKey(ACCUMULATED_DELTA, type, key, String.format("%019d", nanos),
+                stub.getTxId(), String.format("%06d", sequence)).toString();
+        stub.putStringState(getCompositeKey(stub, type, key), value);
+        stub.putStringState(deltaKey, value);
+        String markerKey = stub.createCompositeKey(UPSERT_TABLE_MARKER, type).toString();
+        stub.putStringState(markerKey, TableConfig.of(type, TABLE).toJson());
         return Boolean.TRUE;
     }
 
@@ -237,17 +558,110 @@ public class CommonContract implements ContractInterface {
      */
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     public Boolean delete(Context context, String type, String key) {
-        log.info("CommonContract.delete: type=" + type + ", key=" + key);
+        log.info("delete", () -> "CommonContract.delete: type=" + type + ", key=" + key);
+        return deleteRecord(context.getStub(), type, key);
+    }
+
+    /**
+     * Create many objects in one transaction.
+     * 在一笔交易中批量新增数据，每一项的处理逻辑与 create 相同，同一张表只检查一次表是否存在；
+     * 某一项参数错误、value 不是 json 对象或不符合表的 schema 时，该项已缓存的写操作全部撤销并返回失败结果，其他项照常写入
+     *
+     * @param context    the context 智能合约上下文
+     * @param operations the operations json 数组，每一项为 {"type":"user","key":"10001","value":{...}}，value 也可以是 json 字符串
+     * @return 每一项的执行结果 {@link BatchResult}
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode invoke -o localhost:7050 -C mychannel -n basic -c '{"function":"createMany","Args":["[{\"type\":\"user\",\"key\":\"10001\",\"value\":{\"username\":\"pandau\"}}]"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public BatchResult[] createMany(Context context, String operations) {
+        log.debug(() -> "CommonContract.createMany");
         ChaincodeStub stub = context.getStub();
-        String compositeKey = getCompositeKey(stub, type, key);
-        if (compositeKey == null) {
-            return Boolean.FALSE;
+        JsonArray items = parseBatch(operations);
+        Set<String> tables = new HashSet<>();
+        BatchResult[] results = new BatchResult[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            String type = null;
+            String key = null;
+            savepoint(stub);
+            try {
+                JsonObject item = batchItem(items, i);
+                type = batchField(item, "type");
+                key = batchField(item, "key");
+                Boolean success = createRecord(stub, type, key, batchValue(item), tables);
+                results[i] = new BatchResult(i, type, key, success, null);
+            } catch (JsonParseException | ContractRuntimeException e) {
+                rollback(stub, e);
+                results[i] = new BatchResult(i, type, key, Boolean.FALSE, e.getMessage());
+            }
         }
-        String addDataKey = getCompositeKey(stub, type + TYPE_ADD_SUFFIX, key);
-        stub.delState(compositeKey);
-        stub.delState(addDataKey);
-        return Boolean.TRUE;
+        release(stub);
+        return results;
+    }
+
+    /**
+     * Update many objects in one transaction.
+     * 在一笔交易中批量更新数据，每一项的处理逻辑与 update 相同，某一项失败时撤销该项的写操作并返回失败结果，其他项照常写入
+     *
+     * @param context    the context 智能合约上下文
+     * @param operations the operations json 数组，每一项为 {"type":"user","key":"10001","value":{...}}
+     * @return 每一项的执行结果 {@link BatchResult}
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public BatchResult[] updateMany(Context context, String operations) {
+        log.debug(() -> "CommonContract.updateMany");
+        ChaincodeStub stub = context.getStub();
+        JsonArray items = parseBatch(operations);
+        BatchResult[] results = new BatchResult[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            String type = null;
+            String key = null;
+            savepoint(stub);
+            try {
+                JsonObject item = batchItem(items, i);
+                type = batchField(item, "type");
+                key = batchField(item, "key");
+                Boolean success = updateRecord(stub, type, key, batchValue(item));
+                results[i] = new BatchResult(i, type, key, success, null);
+            } catch (JsonParseException | ContractRuntimeException e) {
+                rollback(stub, e);
+                results[i] = new BatchResult(i, type, key, Boolean.FALSE, e.getMessage());
+            }
+        }
+        release(stub);
+        return results;
+    }
 
+    /**
+     * Delete many objects in one transaction.
+     * 在一笔交易中批量删除数据，每一项的处理逻辑与 delete 相同，某一项失败时撤销该项的写操作并返回失败结果，其他项照常删除
+     *
+     * @param context    the context 智能合约上下文
+     * @param operations the operations json 数组，每一项为 {"type":"user","key":"10001"}
+     * @return 每一项的执行结果 {@link BatchResult}
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public BatchResult[] deleteMany(Context context, String operations) {
+        log.debug(() -> "CommonContract.deleteMany");
+        ChaincodeStub stub = context.getStub();
+        JsonArray items = parseBatch(operations);
+        BatchResult[] results = new BatchResult[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            String type = null;
+            String key = null;
+            savepoint(stub);
+            try {
+                JsonObject item = batchItem(items, i);
+                type = batchField(item, "type");
+                key = batchField(item, "key");
+                results[i] = new BatchResult(i, type, key, deleteRecord(stub, type, key), null);
+            } catch (JsonParseException | ContractRuntimeException e) {
+                rollback(stub, e);
+                results[i] = new BatchResult(i, type, key, Boolean.FALSE, e.getMessage());
+            }
+        }
+        release(stub);
+        return results;
     }
 
 
@@ -279,20 +693,21 @@ public class CommonContract implements ContractInterface {
      */
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public Query query(Context context, String query, Integer pageSize, String bookmark) {
-        log.info("CommonContract.query: query=" + query + ", pageSize=" + pageSize + ", bookmark=" + bookmark);
+        log.info("query", () -> "CommonContract.query: query=" + ContractLogger.truncate(query) + ", pageSize="
+                + pageSize + ", bookmark=" + bookmark);
         if (query == null) {
             throw new ContractRuntimeException(
                     "Incorrect number of arguments. At least 1 argument with query string should be set.");
         }
         ChaincodeStub stub = context.getStub();
+        checkIndexed(stub, query);
         Query response = new Query();
         if (pageSize != null && pageSize.intValue() > -1) {
             QueryResultsIteratorWithMetadata<KeyValue> queryResultWithPagination = stub
                     .getQueryResultWithPagination(query, pageSize, bookmark);
             List<String> values = new ArrayList<String>();
             queryResultWithPagination.forEach(keyValue -> {
-                String val = keyValue.getStringValue();
-                log.info("CommonContract.query: keyValue=" + val);
+                String val = decodeValue(stub, keyValue);
                 values.add(val);
             });
             response.setData(values.toArray(new String[values.size()]));
@@ -307,115 +722,1573 @@ public class CommonContract implements ContractInterface {
             QueryResultsIterator<KeyValue> queryResult = stub.getQueryResult(query);
             List<String> values = new ArrayList<String>();
             queryResult.forEach(keyValue -> {
-                String val = keyValue.getStringValue();
-                log.info("CommonContract.query: key=" + keyValue.getKey() + ", value=" + val);
+                String val = decodeValue(stub, keyValue);
                 values.add(val);
             });
             response.setData(values.toArray(new String[values.size()]));
         }
-        log.info("CommonContract.query: response=" + response);
+        log.debug(() -> "CommonContract.query: " + response.getData().length + " records");
         return response;
     }
 
     /**
-     * Get count of object [query]
-     * 按照上链 json 数据中的特殊属性进行记录数统计
+     * Query the selected fields of objects.
+     * 按照上链 json 数据中的特殊属性进行查询，只返回选中的字段
+     * <p>
+     * 选中的字段写入 mongo 查询语句的 fields，由 CouchDB 完成裁剪，查询语句中已有的 fields 会被替换，
+     * 嵌套字段用 "." 分隔。分页参数与 query 相同
      *
-     * @param context the context
-     * @param query   the query
-     * @return the count of query
-     * @author XieXiongXiong
-     * @date 2021 -07-07 10:29:13
+     * @param context  the context
+     * @param query    the query ，为 mongo 语法的 json 字符串
+     * @param fields   the fields ，字段路径的 json 数组，如 ["name","address.city"]
+     * @param pageSize the page size ，每页的数据条数
+     * @param bookmark the bookmark ，书签，传空代表从第一条记录开始查询
+     * @return {@link Query}
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"queryFields","Args":["{\"selector\":{\"type\":\"user\"}}","[\"name\"]","10",""]}'
      */
     @Transaction(intent = Transaction.TYPE.EVALUATE)
-    public Integer count(Context context, String query) {
-        log.info("CommonContract.count: query=" + query);
-        if (query == null) {
+    public Query queryFields(Context context, String query, String fields, Integer pageSize, String bookmark) {
+        log.info("queryFields", () -> "CommonContract.queryFields: query=" + ContractLogger.truncate(query)
+                + ", fields=" + ContractLogger.truncate(fields));
+        if (query == null || fields == null) {
             throw new ContractRuntimeException(
-                    "Incorrect number of arguments. At least 1 argument with query string should be set.");
+                    "Incorrect number of arguments. At least 2 arguments with query string and fields should be set.");
         }
-        ChaincodeStub stub = context.getStub();
+        return query(context, withFields(query, parseFields(fields)), pageSize, bookmark);
+    }
 
-        QueryResultsIterator<KeyValue> queryResult = stub.getQueryResult(query);
-        if (queryResult == null) {
-            return 0;
+    /**
+     * Register a named query template.
+     * 注册命名的参数化查询模板，客户端之后通过 runQuery 传入模板名和参数执行查询，不需要每次发送完整的查询语句
+     * <p>
+     * 参数占位符为整个 json 字符串值 "${name}"，参数只能绑定为字符串、数字、布尔、null 或它们的数组，见 {@link QueryTemplate}。
+     * 注册时校验模板，并要求模板能命中链码打包的 CouchDB 索引（或指定了 use_index），避免通过模板执行全表扫描：
+     * selector 包含 type 时总能命中 ["type"] 索引，带 sort 的模板需要在 src/main/resources/couchdb-indexes.json 中
+     * 为该表声明包含排序字段的索引并重新生成、打包索引；
+     * 再次注册同名模板会替换原模板，template 为空字符串时删除模板
+     *
+     * @param context  the context 智能合约上下文
+     * @param name     the name 模板名
+     * @param template the template 查询模板，如 {"selector":{"type":"user","status":"${status}"}}
+     * @return Chaincode.Response String 模板的参数名 json 数组
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode invoke -o localhost:7050 -C mychannel -n basic -c '{"function":"registerQuery","Args":["userByStatus","{\"selector\":{\"type\":\"user\",\"status\":\"${status}\"}}"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String registerQuery(Context context, String name, String template) {
+        log.info("registerQuery", () -> "CommonContract.registerQuery: name=" + name + ", template="
+                + ContractLogger.truncate(template));
+        if (name == null || template == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. Expecting 2 [name, template]");
         }
-        int count = 0;
-        Iterator<KeyValue> it = queryResult.iterator();
-        while (it.hasNext()) {
-            it.next();
-            count++;
+        ChaincodeStub stub = context.getStub();
+        String templateKey = stub.createCompositeKey(QUERY_TEMPLATE, name).toString();
+        if (template.isEmpty()) {
+            stub.delState(templateKey);
+            return "[]";
         }
-        log.info("CommonContract.count: " + count);
-        return count;
+        QueryTemplate compiled = QueryTemplate.compile(name, template);
+        String shape = INDEX_ADVISOR.uncoveredShape(template);
+        if (shape != null) {
+            throw new ContractRuntimeException("No index covers query template " + name + ": " + shape
+                    + ", declare the fields in couchdb-indexes.json or set use_index");
+        }
+        stub.putStringState(templateKey, template);
+        return JsonUtil.stringify(compiled.getParams());
     }
 
     /**
-     * Check exists for query
-     * 按照上链 json 数据中的特殊属性查询记录是否存在
+     * Run a named query template.
+     * 绑定参数执行 registerQuery 注册的查询模板，返回结构与 query 相同；编译后的模板缓存在链码进程中
      *
-     * @param context the context
-     * @param query   the query
-     * @return boolean boolean
-     * @author XieXiongXiong
-     * @date 2021 -07-07 10:29:13
+     * @param context  the context 智能合约上下文
+     * @param name     the name 模板名
+     * @param params   the params 参数 json 对象，如 {"status":"active"}，没有参数的模板可传空
+     * @param pageSize the page size ，每页的数据条数，为空时使用默认分页大小
+     * @param bookmark the bookmark ，书签，传空代表从第一条记录开始查询
+     * @return {@link Query}
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"runQuery","Args":["userByStatus","{\"status\":\"active\"}","10",""]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public Query runQuery(Context context, String name, String params, Integer pageSize, String bookmark) {
+        log.info("runQuery", () -> "CommonContract.runQuery: name=" + name + ", params="
+                + ContractLogger.truncate(params) + ", pageSize=" + pageSize + ", bookmark=" + bookmark);
+        if (name == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. At least 1 [name, ...]");
+        }
+        ChaincodeStub stub = context.getStub();
+        String template = stub.getStringState(stub.createCompositeKey(QUERY_TEMPLATE, name).toString());
+        if (template == null || template.isEmpty()) {
+            throw new ContractRuntimeException("Query template " + name + " is not registered");
+        }
+        String query = QueryTemplate.get(name, template).bind(params);
+        return toQuery(stub, stub.getQueryResultWithPagination(query, pageSize(pageSize),
+                bookmark == null ? "" : bookmark), null);
+    }
+
+    /**
+     * List objects of type by key order.
+     * 按主键顺序分页查询一张表的数据，基于组合主键范围扫描，不依赖 CouchDB，LevelDB 同样适用
+     *
+     * @param context  the context
+     * @param type     the type 表名
+     * @param pageSize the page size ，每页的数据条数，传空使用 COMMON_QUERY_PAGE_SIZE
+     * @param bookmark the bookmark ，书签，传空代表从第一条记录开始查询
+     * @return {@link Query}
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"listByType","Args":["user","10",""]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public Query listByType(Context context, String type, Integer pageSize, String bookmark) {
+        log.info("listByType", () -> "CommonContract.listByType: type=" + type + ", pageSize=" + pageSize
+                + ", bookmark=" + bookmark);
+        if (type == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. At least 1 [type, ...]");
+        }
+        ChaincodeStub stub = context.getStub();
+        QueryResultsIteratorWithMetadata<KeyValue> page = stub.getStateByPartialCompositeKeyWithPagination(
+                stub.createCompositeKey(OBJECT_TYPE, type), pageSize(pageSize), bookmark == null ? "" : bookmark);
+        return toQuery(stub, page, null);
+    }
+
+    /**
+     * List objects of type whose key is in [startKey, endKey).
+     * 按主键范围分页查询一张表的数据，包含 startKey，不包含 endKey，不依赖 CouchDB，LevelDB 同样适用
+     * <p>
+     * 范围扫描的书签就是下一页的起始组合主键，因此首次查询时以 startKey 对应的组合主键作为书签开始扫描，
+     * 读到 endKey 时立即停止读取并返回空书签，endKey 之后的数据不会被解码返回；不在 [startKey, endKey) 内的书签直接报错。
+     * 分页范围查询的结束位置由 shim 固定为表的末尾，最后一页中 peer 仍可能多返回 endKey 之后至多 pageSize 条记录
+     *
+     * @param context  the context
+     * @param type     the type 表名
+     * @param startKey the start key ，起始主键，传空代表从第一条记录开始
+     * @param endKey   the end key ，结束主键（不包含），传空代表扫描到表的最后一条记录
+     * @param pageSize the page size ，每页的数据条数，传空使用 COMMON_QUERY_PAGE_SIZE
+     * @param bookmark the bookmark ，书签，传空代表从 startKey 开始查询
+     * @return {@link Query}
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"range","Args":["user","10001","10100","10",""]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public Query range(Context context, String type, String startKey, String endKey, Integer pageSize,
+            String bookmark) {
+        log.info("range", () -> "CommonContract.range: type=" + type + ", startKey=" + startKey + ", endKey=" + endKey
+                + ", pageSize=" + pageSize + ", bookmark=" + bookmark);
+        if (type == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. At least 1 [type, ...]");
+        }
+        ChaincodeStub stub = context.getStub();
+        CompositeKey prefix = stub.createCompositeKey(OBJECT_TYPE, type);
+        String lower = startKey == null || startKey.isEmpty() ? prefix.toString()
+                : getCompositeKey(stub, type, startKey);
+        String end = endKey == null || endKey.isEmpty() ? null : getCompositeKey(stub, type, endKey);
+        String start = lower;
+        if (bookmark != null && !bookmark.isEmpty()) {
+            //书签必须是本表在 [startKey, endKey) 内的组合主键，否则会扫描到范围之外或其他表的数据
+            if (!bookmark.startsWith(prefix.toString()) || compareKeys(bookmark, lower) < 0
+                    || end != null && compareKeys(bookmark, end) >= 0) {
+                throw new ContractRuntimeException("Bookmark is outside the range of type " + type);
+            }
+            start = bookmark;
+        }
+        if (end != null && compareKeys(start, end) >= 0) {
+            return toQuery(stub, null, end);
+        }
+        QueryResultsIteratorWithMetadata<KeyValue> page = stub.getStateByPartialCompositeKeyWithPagination(prefix,
+                pageSize(pageSize), start);
+        return toQuery(stub, page, end);
+    }
+
+    /**
+     * 按照上链 json 数据中的特殊属性进行分页查询，返回结构与 {@link Query} 相同，但 data 为 json 对象数组
+     * <p>
+     * 查询结果原样写入返回结构，避免 String[] 在返回时被再次转义为 json 字符串。
+     * pageSize 传空或小于 0 时按 queryBounded 的默认上限查询，并返回 truncated 标记
+     *
+     * @param context  the context
+     * @param query    the query ，为 mongo 语法的 json 字符串
+     * @param pageSize the page size ，每页的数据条数
+     * @param bookmark the bookmark ，书签，传空代表从第一条记录开始查询
+     * @return Chaincode.Response String
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"queryRaw","Args":["{\"selector\":{\"type\":\"user\"}}","10",""]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String queryRaw(Context context, String query, Integer pageSize, String bookmark) {
+        log.info("queryRaw", () -> "CommonContract.queryRaw: query=" + ContractLogger.truncate(query) + ", pageSize="
+                + pageSize + ", bookmark=" + bookmark);
+        if (query == null) {
+            throw new ContractRuntimeException(
+                    "Incorrect number of arguments. At least 1 argument with query string should be set.");
+        }
+        ChaincodeStub stub = context.getStub();
+        checkIndexed(stub, query);
+        List<String> values = new ArrayList<>();
+        QueryMeta meta;
+        if (pageSize != null && pageSize.intValue() > -1) {
+            QueryResultsIteratorWithMetadata<KeyValue> page = stub.getQueryResultWithPagination(query, pageSize,
+                    bookmark);
+            QueryResponseMetadata metadata;
+            try {
+                for (KeyValue keyValue : page) {
+                    values.add(decodeValue(stub, keyValue));
+                }
+                metadata = page.getMetadata();
+            } finally {
+                close(page);
+            }
+            meta = new QueryMeta();
+            meta.setRecordsCount(metadata == null ? values.size() : metadata.getFetchedRecordsCount());
+            meta.setBookmark(metadata == null ? "" : metadata.getBookmark());
+        } else {
+            meta = BoundedScan.of(null, null, null).run(
+                    (size, pageBookmark) -> stub.getQueryResultWithPagination(query, size, pageBookmark), bookmark,
+                    keyValue -> values.add(decodeValue(stub, keyValue)));
+        }
+        return JsonUtil.rawQuery(values, meta);
+    }
+
+    /**
+     * 按照上链 json 数据中的特殊属性进行有界查询
+     * <p>
+     * 结果按页从 peer 拉取并直接写入返回结果，返回记录数、字节数、耗时任一达到上限即停止，
+     * 此时 {@link QueryMeta#getTruncated()} 为 true，使用返回的 bookmark 继续查询即可从中断处继续，
+     * 因此任意大小的结果集都可以可靠地分批读取。上限传空或小于 1 时使用链码进程的环境变量配置
+     * （COMMON_QUERY_MAX_RECORDS、COMMON_QUERY_MAX_BYTES、COMMON_QUERY_MAX_MILLIS）。
+     *
+     * @param context    the context
+     * @param query      the query ，为 mongo 语法的 json 字符串
+     * @param maxRecords the max records ，最多返回的记录数
+     * @param maxBytes   the max bytes ，最多返回的字节数
+     * @param maxMillis  the max millis ，最长执行时间（毫秒）
+     * @param bookmark   the bookmark ，书签，传空代表从第一条记录开始查询
+     * @return {@link Query}
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"queryBounded","Args":["{\"selector\":{\"type\":\"user\"}}","1000","1048576","5000",""]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public Query queryBounded(Context context, String query, Integer maxRecords, Integer maxBytes, Integer maxMillis,
+            String bookmark) {
+        log.info("queryBounded", () -> "CommonContract.queryBounded: query=" + ContractLogger.truncate(query)
+                + ", maxRecords=" + maxRecords + ", maxBytes=" + maxBytes + ", maxMillis=" + maxMillis + ", bookmark="
+                + bookmark);
+        if (query == null) {
+            throw new ContractRuntimeException(
+                    "Incorrect number of arguments. At least 1 argument with query string should be set.");
+        }
+        ChaincodeStub stub = context.getStub();
+        checkIndexed(stub, query);
+        List<String> values = new ArrayList<>();
+        QueryMeta meta = BoundedScan.of(maxRecords, maxBytes, maxMillis).run(
+                (pageSize, pageBookmark) -> stub.getQueryResultWithPagination(query, pageSize, pageBookmark),
+                bookmark, keyValue -> values.add(decodeValue(stub, keyValue)));
+        Query response = new Query();
+        response.setData(values.toArray(new String[0]));
+        response.setMeta(meta);
+        log.debug(() -> "CommonContract.queryBounded: " + meta);
+        return response;
+    }
+
+    /**
+     * Find objects of type by an indexed field value.
+     * 通过合约维护的二级索引按字段值分页查询，基于组合主键扫描，不依赖 CouchDB，LevelDB 同样适用
+     * <p>
+     * 字段需要先通过 configureTable 声明为索引（如 {"indexes":["status"]}），声明前已存在的数据需按 listKeys 返回的 key 调用 rebuildIndex 补建索引。
+     * 数字按原有写法、布尔值按 true/false 匹配。返回前会校验数据的当前值，过期的索引不会返回数据
+     *
+     * @param context  the context
+     * @param type     the type 表名
+     * @param field    the field 索引字段
+     * @param value    the value 字段值
+     * @param pageSize the page size ，每页的索引条数
+     * @param bookmark the bookmark ，书签，传空代表从第一条记录开始查询
+     * @return {@link Query}
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"findByIndex","Args":["user","status","active","10",""]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public Query findByIndex(Context context, String type, String field, String value, Integer pageSize,
+            String bookmark) {
+        log.info("findByIndex", () -> "CommonContract.findByIndex: type=" + type + ", field=" + field + ", value="
+                + ContractLogger.truncate(value) + ", pageSize=" + pageSize + ", bookmark=" + bookmark);
+        if (type == null || field == null || value == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. At least 3 [type, field, value, ...]");
+        }
+        ChaincodeStub stub = context.getStub();
+        if (!loadTable(stub, type).getIndexes().contains(field)) {
+            throw new ContractRuntimeException("Field " + field + " is not indexed for type " + type);
+        }
+        List<String> values = new ArrayList<>();
+        List<String> fields = Collections.singletonList(field);
+        QueryResultsIteratorWithMetadata<KeyValue> page = stub.getStateByPartialCompositeKeyWithPagination(
+                stub.createCompositeKey(INDEX, type, field, value), pageSize(pageSize),
+                bookmark == null ? "" : bookmark);
+        QueryResponseMetadata metadata;
+        try {
+            for (KeyValue entry : page) {
+                String key = stub.splitCompositeKey(entry.getKey()).getAttributes().get(3);
+                String doc = readValue(stub, type, key);
+                if (doc != null && !doc.isEmpty() && value.equals(JsonMerger.scalars(doc, fields).get(field))) {
+                    values.add(doc);
+                }
+            }
+            metadata = page.getMetadata();
+        } finally {
+            close(page);
+        }
+        Query response = new Query();
+        response.setData(values.toArray(new String[0]));
+        QueryMeta meta = new QueryMeta();
+        meta.setRecordsCount(values.size());
+        meta.setBookmark(metadata == null ? "" : metadata.getBookmark());
+        response.setMeta(meta);
+        log.debug(() -> "CommonContract.findByIndex: " + meta);
+        return response;
+    }
+
+    /**
+     * List keys of type by key order.
+     * 按主键顺序分页查询一张表的 key，不解码数据内容，用于为 rebuildIndex 等写交易准备一批 key
+     *
+     * @param context  the context
+     * @param type     the type 表名
+     * @param pageSize the page size ，每页的 key 数，传空使用 COMMON_QUERY_PAGE_SIZE
+     * @param bookmark the bookmark ，书签，传空代表从第一条记录开始查询
+     * @return {@link Query} data 为 key 数组
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"listKeys","Args":["user","500",""]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public Query listKeys(Context context, String type, Integer pageSize, String bookmark) {
+        log.info("listKeys", () -> "CommonContract.listKeys: type=" + type + ", pageSize=" + pageSize
+                + ", bookmark=" + bookmark);
+        if (type == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. At least 1 [type, ...]");
+        }
+        ChaincodeStub stub = context.getStub();
+        List<String> keys = new ArrayList<>();
+        QueryResponseMetadata metadata;
+        QueryResultsIteratorWithMetadata<KeyValue> page = stub.getStateByPartialCompositeKeyWithPagination(
+                stub.createCompositeKey(OBJECT_TYPE, type), pageSize(pageSize), bookmark == null ? "" : bookmark);
+        try {
+            for (KeyValue keyValue : page) {
+                keys.add(stub.splitCompositeKey(keyValue.getKey()).getAttributes().get(1));
+            }
+            metadata = page.getMetadata();
+        } finally {
+            close(page);
+        }
+        Query response = new Query();
+        response.setData(keys.toArray(new String[0]));
+        QueryMeta meta = new QueryMeta();
+        meta.setRecordsCount(keys.size());
+        meta.setBookmark(metadata == null ? "" : metadata.getBookmark());
+        response.setMeta(meta);
+        return response;
+    }
+
+    /**
+     * Rebuild an index of type for the given existing objects.
+     * 为已存在的数据补建二级索引，只处理参数中给出的 key
+     * <p>
+     * 写交易中不能使用分页查询，shim 的 getStateByRange 又不接受组合 key，因此由客户端先调用 listKeys 分页取得 key，
+     * 再按页提交本交易；本交易逐条读取数据，只有这些 key 进入读集，不做范围扫描。已存在的索引会被重复写入，不影响结果，
+     * 已不存在的 key 跳过。配置索引之后写入的数据由 create/update/patch 维护索引，不需要补建
+     *
+     * @param context the context
+     * @param type    the type 表名
+     * @param field   the field 索引字段
+     * @param keys    the keys json 数组，如 listKeys 返回的一页 key，条数上限为 COMMON_BATCH_MAX_SIZE
+     * @return the count of objects with the field 写入了索引的数据条数
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode invoke -o localhost:7050 -C mychannel -n basic -c '{"function":"rebuildIndex","Args":["user","status","[\"10001\",\"10002\"]"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Integer rebuildIndex(Context context, String type, String field, String keys) {
+        log.info("rebuildIndex", () -> "CommonContract.rebuildIndex: type=" + type + ", field=" + field
+                + ", keys=" + ContractLogger.truncate(keys));
+        if (type == null || field == null || keys == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. Expecting 3 [type, field, keys]");
+        }
+        ChaincodeStub stub = context.getStub();
+        if (!loadTable(stub, type).getIndexes().contains(field)) {
+            throw new ContractRuntimeException("Field " + field + " is not indexed for type " + type);
+        }
+        List<String> fields = Collections.singletonList(field);
+        int indexed = 0;
+        for (JsonElement element : parseBatch(keys)) {
+            if (!element.isJsonPrimitive()) {
+                throw new ContractRuntimeException("Keys must be a json array of strings");
+            }
+            String key = element.getAsString();
+            String current = readValue(stub, type, key);
+            if (current == null || current.isEmpty()) {
+                continue;
+            }
+            String value;
+            try {
+                value = JsonMerger.scalars(current, fields).get(field);
+            } catch (JsonParseException e) {
+                continue;
+            }
+            if (value != null) {
+                stub.putState(getIndexKey(stub, type, field, value, key), INDEX_VALUE);
+                indexed++;
+            }
+        }
+        final int total = indexed;
+        log.debug(() -> "CommonContract.rebuildIndex: " + total);
+        return total;
+    }
+
+    /**
+     * Aggregate the numeric fields of objects, optionally grouped by a field.
+     * 流式聚合查询，逐条累加 sum/min/max/avg 和分组记录数，不在内存中保存文档，无法解析的文档计入 unparsed
+     * <p>
+     * query 以 "{" 开头时为 mongo 语法的查询语句，否则视为表名，按主键范围扫描该表。
+     * 扫描范围与 queryBounded 一样受记录数和耗时上限约束，meta.truncated 为 true 时，
+     * 把本次结果作为 partial、meta.bookmark 作为 bookmark 再次调用即可继续累加
+     *
+     * @param context    the context
+     * @param query      the query ，mongo 查询语句或表名
+     * @param spec       the spec ，聚合规则，如 {"groupBy":"dept","fields":["amount"]}
+     * @param maxRecords the max records ，本次最多扫描的记录数
+     * @param maxMillis  the max millis ，最长执行时间（毫秒）
+     * @param bookmark   the bookmark ，书签，传空代表从第一条记录开始
+     * @param partial    the partial ，上一次调用的结果，传空代表从零开始
+     * @return Chaincode.Response String 聚合结果 json
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"aggregate","Args":["user","{\"groupBy\":\"dept\",\"fields\":[\"age\"]}","","","",""]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String aggregate(Context context, String query, String spec, Integer maxRecords, Integer maxMillis,
+            String bookmark, String partial) {
+        log.info("aggregate", () -> "CommonContract.aggregate: query=" + ContractLogger.truncate(query) + ", spec="
+                + ContractLogger.truncate(spec) + ", maxRecords=" + maxRecords + ", maxMillis=" + maxMillis
+                + ", bookmark=" + bookmark);
+        if (query == null || spec == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. At least 2 [query, spec, ...]");
+        }
+        ChaincodeStub stub = context.getStub();
+        Aggregator aggregator = Aggregator.of(spec, partial);
+        BoundedScan.PageSource source;
+        if (query.trim().startsWith(JSON_STRING)) {
+            checkIndexed(stub, query);
+            source = (pageSize, pageBookmark) -> stub.getQueryResultWithPagination(query, pageSize, pageBookmark);
+        } else {
+            source = (pageSize, pageBookmark) -> stub.getStateByPartialCompositeKeyWithPagination(
+                    stub.createCompositeKey(OBJECT_TYPE, query), pageSize, pageBookmark);
+        }
+        QueryMeta meta = BoundedScan.of(maxRecords, Integer.MAX_VALUE, maxMillis).run(source, bookmark,
+                keyValue -> aggregator.accept(decodeValue(stub, keyValue)));
+        log.debug(() -> "CommonContract.aggregate: " + meta);
+        return aggregator.toJson(meta);
+    }
+
+    /**
+     * Get count of object [query]
+     * 按照上链 json 数据中的特殊属性进行记录数统计
+     *
+     * @param context the context
+     * @param query   the query
+     * @return the count of query
+     * @author XieXiongXiong
+     * @date 2021 -07-07 10:29:13
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public Integer count(Context context, String query) {
+        log.info("count", () -> "CommonContract.count: query=" + ContractLogger.truncate(query));
+        if (query == null) {
+            throw new ContractRuntimeException(
+                    "Incorrect number of arguments. At least 1 argument with query string should be set.");
+        }
+        ChaincodeStub stub = context.getStub();
+        checkIndexed(stub, query);
+
+        QueryResultsIterator<KeyValue> queryResult = stub.getQueryResult(keysOnly(query));
+        if (queryResult == null) {
+            return 0;
+        }
+        int count = 0;
+        try {
+            Iterator<KeyValue> it = queryResult.iterator();
+            while (it.hasNext()) {
+                it.next();
+                count++;
+            }
+        } finally {
+            close(queryResult);
+        }
+        final int total = count;
+        log.debug(() -> "CommonContract.count: " + total);
+        return total;
+    }
+
+    /**
+     * Get count of object [query], stop counting at limit
+     * 按照上链 json 数据中的特殊属性进行记录数统计，统计到 limit 条即停止
+     * <p>
+     * 按 COMMON_COUNT_PAGE_SIZE 分页查询，只返回记录的 _id，不传输文档内容，适合数据量很大的表
+     *
+     * @param context the context
+     * @param query   the query
+     * @param limit   the limit 最多统计的条数
+     * @return the count of query, no more than limit
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"countUpTo","Args":["{\"selector\":{\"type\":\"user\"}}","10000"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public Integer countUpTo(Context context, String query, Integer limit) {
+        log.info("countUpTo", () -> "CommonContract.countUpTo: query=" + ContractLogger.truncate(query) + ", limit="
+                + limit);
+        if (query == null || limit == null || limit < 1) {
+            throw new ContractRuntimeException(
+                    "Incorrect number of arguments. Expecting 2 [query, limit], limit should be positive.");
+        }
+        ChaincodeStub stub = context.getStub();
+        checkIndexed(stub, query);
+        String keysQuery = keysOnly(query);
+        String bookmark = "";
+        int count = 0;
+        while (count < limit) {
+            int pageSize = Math.min(ContractConfig.COUNT_PAGE_SIZE, limit - count);
+            QueryResultsIteratorWithMetadata<KeyValue> page = stub.getQueryResultWithPagination(keysQuery, pageSize,
+                    bookmark);
+            int fetched = 0;
+            QueryResponseMetadata metadata;
+            try {
+                Iterator<KeyValue> it = page.iterator();
+                while (it.hasNext()) {
+                    it.next();
+                    fetched++;
+                }
+                metadata = page.getMetadata();
+            } finally {
+                close(page);
+            }
+            count += fetched;
+            if (fetched < pageSize || metadata == null || metadata.getBookmark().isEmpty()) {
+                break;
+            }
+            bookmark = metadata.getBookmark();
+        }
+        final int total = count;
+        log.debug(() -> "CommonContract.countUpTo: " + total);
+        return total;
+    }
+
+    /**
+     * Check exists for query
+     * 按照上链 json 数据中的特殊属性查询记录是否存在
+     *
+     * @param context the context
+     * @param query   the query
+     * @return boolean boolean
+     * @author XieXiongXiong
+     * @date 2021 -07-07 10:29:13
      */
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public Boolean exists(Context context, String query) {
-        log.info("CommonContract.exist: query=" + query);
+        log.info("exists", () -> "CommonContract.exists: query=" + ContractLogger.truncate(query));
         if (query == null) {
             throw new ContractRuntimeException(
                     "Incorrect number of arguments. At least 1 argument with query string should be set.");
         }
-        ChaincodeStub stub = context.getStub();
-
-        QueryResultsIterator<KeyValue> queryResult = stub.getQueryResult(query);
-        if (queryResult == null) {
+        ChaincodeStub stub = context.getStub();
+        checkIndexed(stub, query);
+
+        //只取一条，并立即关闭迭代器
+        QueryResultsIteratorWithMetadata<KeyValue> queryResult = stub.getQueryResultWithPagination(keysOnly(query),
+                1, "");
+        if (queryResult == null) {
+            return Boolean.FALSE;
+        }
+        boolean exists;
+        try {
+            exists = queryResult.iterator().hasNext();
+        } finally {
+            close(queryResult);
+        }
+        log.debug(() -> "CommonContract.exists: " + exists);
+        return exists;
+    }
+
+    /**
+     * Get count of type from the maintained counters.
+     * 按表读取计数器，只扫描该表的计数器分片，不读取任何数据记录
+     * <p>
+     * 需要先通过 configureTable 开启表的计数器（{"counter":true}），再调用 seedCounter 按已有数据初始化，未初始化时报错
+     *
+     * @param context the context
+     * @param type    the type 表名
+     * @return the count of type
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"countType","Args":["user"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public Long countType(Context context, String type) {
+        log.info("countType", () -> "CommonContract.countType: type=" + type);
+        if (type == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. Expecting 1 [type]");
+        }
+        ChaincodeStub stub = context.getStub();
+        if (!loadTable(stub, type).isCounterSeeded()) {
+            throw new ContractRuntimeException("Counter of " + type + " is not seeded, call seedCounter first");
+        }
+        long count = countRecords(stub, type);
+        log.debug(() -> "CommonContract.countType: " + count);
+        return count;
+    }
+
+    /**
+     * Report the query shapes that no packaged CouchDB index covers.
+     * 统计本链码进程启动以来未命中 CouchDB 索引的查询形态及次数，用于补充 couchdb-indexes.json 中的索引声明
+     *
+     * @param context the context
+     * @return Chaincode.Response String 查询形态到次数的 json 对象
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"uncoveredQueries","Args":[]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String uncoveredQueries(Context context) {
+        return JsonUtil.stringify(INDEX_ADVISOR.report());
+    }
+
+    /**
+     * Report the per function metrics of this chaincode process.
+     * 统计本链码进程启动以来每个交易方法的耗时分布（微秒）以及对 peer 的 getState/putState/delState 次数、读写字节数和查询返回的记录数
+     * <p>
+     * 只统计执行成功的交易；指标保存在各背书节点自己的链码进程中，查询哪个节点就返回哪个节点的指标。
+     * 配置 COMMON_METRICS_PORT 后也可以通过 http://COMMON_METRICS_HOST:COMMON_METRICS_PORT/metrics 以 Prometheus 格式采集
+     *
+     * @param context the context
+     * @return Chaincode.Response String 交易方法名到指标的 json 对象
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"metrics","Args":[]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String metrics(Context context) {
+        return METRICS.toJson();
+    }
+
+    /**
+     * Change the logging settings of this chaincode process at runtime.
+     * 运行时修改本链码进程的日志级别、按交易方法的采样率和日志中数据的最大长度，参数为空时保持原配置
+     * <p>
+     * 配置只作用于被查询的节点上的链码进程，不写入账本，链码重启后恢复为环境变量 COMMON_LOG_LEVEL、
+     * COMMON_LOG_SAMPLE_RATES、COMMON_LOG_MAX_PAYLOAD 的配置；只允许 COMMON_LOG_ADMIN_MSPID 配置的 MSP 的客户端调用，未配置时拒绝所有调用
+     *
+     * @param context     the context
+     * @param level       the level ，debug/info/warning/error/off
+     * @param sampleRates the sample rates ，如 "query=0.01,get=0.1,*=1"，* 为默认采样率
+     * @param maxPayload  the max payload ，日志中数据、查询语句的最大字符数
+     * @return Chaincode.Response String 修改后的日志配置
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"configureLogging","Args":["warning","query=0.01","256"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String configureLogging(Context context, String level, String sampleRates, Integer maxPayload) {
+        String adminMspId = ContractConfig.LOG_ADMIN_MSPID;
+        if (adminMspId == null || adminMspId.isEmpty()) {
+            throw new ContractRuntimeException("configureLogging is disabled, set COMMON_LOG_ADMIN_MSPID to enable it");
+        }
+        if (!adminMspId.equals(context.getClientIdentity().getMSPID())) {
+            throw new ContractRuntimeException("Only clients of " + adminMspId + " can configure logging");
+        }
+        String settings = ContractLogger.configure(level == null || level.isEmpty() ? null : level,
+                sampleRates == null || sampleRates.isEmpty() ? null : sampleRates, maxPayload);
+        log.warning(() -> "CommonContract.configureLogging: " + settings);
+        return settings;
+    }
+
+    /**
+     * Seed the counter of type from the existing records.
+     * 扫描表在 type~key 下的全部数据初始化计数器：删除已有的计数器分片，写入检查点分片，并在表记录中标记计数器已初始化，
+     * 之后 create/update/delete 才维护计数器，countType 和未命中索引的查询检查才使用计数器
+     * <p>
+     * 表需要先通过 configureTable 开启计数器（{"counter":true}）。初始化交易读取整张表，与并发的写交易在范围上会产生幻读冲突，
+     * 冲突时重试即可；写交易都会读取表记录，初始化提交之后，基于旧表记录背书的写交易会因 MVCC 冲突失败，因此计数不会遗漏。
+     * 数据量很大的表可能超过 peer 的查询条数限制（totalQueryLimit），需要在低峰期调整该限制后执行；
+     * upsert 不维护计数器，开启计数器的表应使用 create/update
+     *
+     * @param context the context
+     * @param type    the type 表名
+     * @return the count of type
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode invoke -o localhost:7050 -C mychannel -n basic -c '{"function":"seedCounter","Args":["user"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Long seedCounter(Context context, String type) {
+        log.info("seedCounter", () -> "CommonContract.seedCounter: type=" + type);
+        if (type == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. Expecting 1 [type]");
+        }
+        ChaincodeStub stub = context.getStub();
+        TableConfig table = loadTable(stub, type).withCounterSeeded();
+        long count = 0L;
+        QueryResultsIterator<KeyValue> records = stub.getStateByPartialCompositeKey(OBJECT_TYPE, type);
+        try {
+            for (KeyValue record : records) {
+                if (!isEmpty(record.getValue())) {
+                    count++;
+                }
+            }
+        } finally {
+            close(records);
+        }
+        QueryResultsIterator<KeyValue> shards = stub.getStateByPartialCompositeKey(COUNTER, type);
+        try {
+            for (KeyValue shard : shards) {
+                stub.delState(shard.getKey());
+            }
+        } finally {
+            close(shards);
+        }
+        stub.putStringState(stub.createCompositeKey(COUNTER, type, COUNTER_CHECKPOINT).toString(), Long.toString(count));
+        stub.putStringState(getCompositeTableKey(stub, type), table.toJson());
+        final long total = count;
+        log.debug(() -> "CommonContract.seedCounter: " + total);
+        return total;
+    }
+
+    /**
+     * Compact the counter shards of type into a single checkpoint.
+     * 将表的所有计数器分片合并为一个检查点分片，建议定期调用
+     * <p>
+     * 压缩交易与并发的写交易在分片范围上可能产生幻读冲突，冲突时压缩交易失败，重试即可，不会影响写交易
+     *
+     * @param context the context
+     * @param type    the type 表名
+     * @return the count of type
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode invoke -o localhost:7050 -C mychannel -n basic -c '{"function":"compactCounter","Args":["user"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Long compactCounter(Context context, String type) {
+        log.info("compactCounter", () -> "CommonContract.compactCounter: type=" + type);
+        if (type == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. Expecting 1 [type]");
+        }
+        ChaincodeStub stub = context.getStub();
+        String checkpointKey = stub.createCompositeKey(COUNTER, type, COUNTER_CHECKPOINT).toString();
+        long count = 0L;
+        QueryResultsIterator<KeyValue> shards = stub.getStateByPartialCompositeKey(COUNTER, type);
+        try {
+            for (KeyValue shard : shards) {
+                count += parseCounter(shard.getValue());
+                if (!checkpointKey.equals(shard.getKey())) {
+                    stub.delState(shard.getKey());
+                }
+            }
+        } finally {
+            close(shards);
+        }
+        stub.putStringState(checkpointKey, Long.toString(count));
+        final long total = count;
+        log.debug(() -> "CommonContract.compactCounter: " + total);
+        return total;
+    }
+
+    /**
+     * Create new object with type, key and value.
+     * 在区块链上加载一条数据的所有历史记录
+     *
+     * @param context the context 智能合约上下文，需要定义在每一个方法的首参数，主要能进行数据查询，上链，事件，权限等操作，业务方无需关注
+     * @param type    the type 表名，合约数据存储到 CouchDB （类似 MongoDB）中的数据库表名，一般来说一个智能合约对应一张表，如用户信息智能合约存储到 user 表，不推荐一个智能合约的数据存储到多张表中，会导致查询语句非常复杂。
+     * @param key     the key 数据表中记录的唯一标识，如用户信息表中的 user_id 如 10001
+     * @return Chaincode.Response String
+     * @author XieXiongXiong
+     * @date 2021 -07-07 10:29:12
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"history","Args":["user","10001"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public History[] history(Context context, String type, String key) {
+        log.info("history", () -> "CommonContract.history: type=" + type + ", key=" + key);
+        ChaincodeStub stub = context.getStub();
+        String compositeKey = getCompositeKey(stub, type, key);
+        List<History> histories = new ArrayList<>();
+        QueryResultsIterator<KeyModification> historyIterator = stub.getHistoryForKey(compositeKey);
+        if (historyIterator != null) {
+            historyIterator.forEach(mod -> histories.add(toHistory(mod, true)));
+        }
+        log.debug(() -> "CommonContract.history: " + histories.size() + " modifications");
+        return histories.toArray(new History[histories.size()]);
+    }
+
+    /**
+     * Load one page of the history of an object, optionally limited to a time window.
+     * 分页加载一条数据的历史记录，达到条数上限或超出时间窗口后立即停止读取
+     * <p>
+     * 历史记录按 peer 返回的顺序（Fabric 2.x 为从新到旧）输出，时间窗口依赖交易时间戳随区块递增，
+     * 遇到早于 fromMillis 的记录即停止。meta.bookmark 为本页最后一条记录的 txId，作为下一页的 cursorTxId 传入，
+     * meta.truncated 表示窗口内还有更多记录；分块保存的版本无法从历史记录还原，只返回 chunked=true，不返回 value
+     *
+     * @param context    the context 智能合约上下文
+     * @param type       the type 表名
+     * @param key        the key 数据表中记录的唯一标识
+     * @param fromMillis the from millis 起始时间（含），为空时不限制
+     * @param toMillis   the to millis 结束时间（含），为空时不限制
+     * @param limit      the limit 每页条数，为空时使用 COMMON_QUERY_PAGE_SIZE，最大为 COMMON_QUERY_MAX_RECORDS
+     * @param cursorTxId the cursor tx id 上一页返回的 bookmark，为空时从头开始
+     * @param withValues the with values 是否返回每个版本的 value，false 时只返回 txId、timestamp 和 isDelete
+     * @return Chaincode.Response HistoryPage
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"historyPage","Args":["user","10001","1700000000000","","20","","false"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public HistoryPage historyPage(Context context, String type, String key, Long fromMillis, Long toMillis,
+                                   Integer limit, String cursorTxId, Boolean withValues) {
+        log.info("historyPage", () -> "CommonContract.historyPage: type=" + type + ", key=" + key + ", fromMillis="
+                + fromMillis + ", toMillis=" + toMillis + ", limit=" + limit + ", cursorTxId=" + cursorTxId);
+        if (type == null || key == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. At least 2 [type, key, ...]");
+        }
+        ChaincodeStub stub = context.getStub();
+        int max = Math.min(pageSize(limit), ContractConfig.QUERY_MAX_RECORDS);
+        boolean values = !Boolean.FALSE.equals(withValues);
+        boolean skipping = cursorTxId != null && !cursorTxId.isEmpty();
+        List<History> histories = new ArrayList<>();
+        boolean truncated = false;
+        QueryResultsIterator<KeyModification> historyIterator = stub.getHistoryForKey(getCompositeKey(stub, type, key));
+        try {
+            for (KeyModification mod : historyIterator) {
+                if (skipping) {
+                    skipping = !cursorTxId.equals(mod.getTxId());
+                    continue;
+                }
+                Instant timestamp = mod.getTimestamp();
+                long millis = timestamp == null ? 0L : timestamp.toEpochMilli();
+                if (timestamp != null && toMillis != null && millis > toMillis) {
+                    continue;
+                }
+                if (timestamp != null && fromMillis != null && millis < fromMillis) {
+                    break;
+                }
+                if (histories.size() >= max) {
+                    truncated = true;
+                    break;
+                }
+                histories.add(toHistory(mod, values));
+            }
+        } finally {
+            close(historyIterator);
+        }
+        QueryMeta meta = new QueryMeta();
+        meta.setRecordsCount(histories.size());
+        meta.setBookmark(truncated ? histories.get(histories.size() - 1).getTxId() : "");
+        meta.setTruncated(truncated);
+        HistoryPage page = new HistoryPage();
+        page.setData(histories.toArray(new History[histories.size()]));
+        page.setMeta(meta);
+        log.debug(() -> "CommonContract.historyPage: " + page.getData().length + " modifications, truncated="
+                + meta.getTruncated());
+        return page;
+    }
+
+    /**
+     * Load the state of an object as of a point in time.
+     * 加载一条数据在某一时刻的状态，从最新的历史记录开始读取，读到第一条不晚于该时刻的记录即停止
+     * <p>
+     * 每条历史记录都是完整的数据，无需回放，读取的记录数只与该时刻之后的修改次数有关；该时刻的值为分块保存时无法还原，直接报错
+     *
+     * @param context     the context 智能合约上下文
+     * @param type        the type 表名
+     * @param key         the key 数据表中记录的唯一标识
+     * @param epochMillis the epoch millis 时刻（毫秒时间戳）
+     * @return Chaincode.Response String 该时刻的数据，当时不存在或已删除时返回 null
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"getAsOf","Args":["user","10001","1700000000000"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String getAsOf(Context context, String type, String key, Long epochMillis) {
+        log.info("getAsOf", () -> "CommonContract.getAsOf: type=" + type + ", key=" + key + ", epochMillis="
+                + epochMillis);
+        if (type == null || key == null || epochMillis == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. Expecting 3 [type, key, epochMillis]");
+        }
+        ChaincodeStub stub = context.getStub();
+        return valueAsOf(stub, getCompositeKey(stub, type, key), epochMillis);
+    }
+
+    /**
+     * Query the states of objects of type as of a point in time.
+     * 有界地加载一张表的数据在某一时刻的状态，按 key 顺序遍历当前存在的记录，逐条读取历史记录
+     * <p>
+     * 只能遍历当前仍存在的 key，该时刻之后被删除的记录不会出现在结果中。
+     * 上限与书签的含义与 queryBounded 相同，meta.recordsCount 为返回的数据条数
+     *
+     * @param context     the context 智能合约上下文
+     * @param type        the type 表名
+     * @param epochMillis the epoch millis 时刻（毫秒时间戳）
+     * @param maxRecords  the max records ，最多遍历的记录数
+     * @param maxMillis   the max millis ，最长执行时间（毫秒）
+     * @param bookmark    the bookmark ，书签，传空代表从第一条记录开始查询
+     * @return {@link Query}
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"queryAsOf","Args":["user","1700000000000","100","5000",""]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public Query queryAsOf(Context context, String type, Long epochMillis, Integer maxRecords, Integer maxMillis,
+            String bookmark) {
+        log.info("queryAsOf", () -> "CommonContract.queryAsOf: type=" + type + ", epochMillis=" + epochMillis
+                + ", maxRecords=" + maxRecords + ", maxMillis=" + maxMillis + ", bookmark=" + bookmark);
+        if (type == null || epochMillis == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. At least 2 [type, epochMillis, ...]");
+        }
+        ChaincodeStub stub = context.getStub();
+        List<String> values = new ArrayList<>();
+        QueryMeta meta = BoundedScan.of(maxRecords, null, maxMillis).run(
+                (pageSize, pageBookmark) -> stub.getStateByPartialCompositeKeyWithPagination(
+                        stub.createCompositeKey(OBJECT_TYPE, type), pageSize, pageBookmark),
+                bookmark, keyValue -> {
+                    String value = valueAsOf(stub, keyValue.getKey(), epochMillis);
+                    if (value != null) {
+                        values.add(value);
+                    }
+                });
+        meta.setRecordsCount(values.size());
+        Query response = new Query();
+        response.setData(values.toArray(new String[0]));
+        response.setMeta(meta);
+        log.debug(() -> "CommonContract.queryAsOf: " + meta);
+        return response;
+    }
+
+    /**
+     * Load the latest n modifications of an object.
+     * 加载一条数据最近的 n 条历史记录，等同于不限时间窗口的 historyPage 第一页
+     *
+     * @param context the context 智能合约上下文
+     * @param type    the type 表名
+     * @param key     the key 数据表中记录的唯一标识
+     * @param n       the n 条数
+     * @return Chaincode.Response HistoryPage
+     * <p>
+     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"latestN","Args":["user","10001","5"]}'
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public HistoryPage latestN(Context context, String type, String key, Integer n) {
+        return historyPage(context, type, key, null, null, n, null, Boolean.TRUE);
+    }
+
+    /**
+     * 新增一条数据，并按表配置更新累加状态，tables 中已存在的表不再重复检查
+     */
+    private Boolean createRecord(ChaincodeStub stub, String type, String key, String value, Set<String> tables) {
+        String compositeKey = getCompositeKey(stub, type, key);
+        if (value == null) {
+            return Boolean.FALSE;
+        }
+        TableConfig table = loadTable(stub, type);
+        validateSchema(stub, table, type, key, value);
+        boolean isNew = table.isCounterSeeded() && isEmpty(stub.getState(compositeKey));
+        log.debug(() -> "new value: " + ContractLogger.truncate(value));
+        writeAccumulated(stub, table, type, key, value);
+        if (!table.getIndexes().isEmpty()) {
+            updateIndexes(stub, table, type, key, readValue(stub, type, key), value);
+        }
+        writeValue(stub, table, type, key, value);
+        if (isNew) {
+            adjustCounter(stub, type, 1);
+        }
+        //同一笔交易中每张表只检查一次，如果表不存在则创建表
+        if (tables.add(type) && !table.isStored()) {
+            stub.putStringState(getCompositeTableKey(stub, type), table.toJson());
+        }
+
+        return Boolean.TRUE;
+    }
+
+    /**
+     * 更新一条数据，并按表配置更新累加状态，数据不存在时返回 false
+     */
+    private Boolean updateRecord(ChaincodeStub stub, String type, String key, String value) {
+        String compositeKey = getCompositeKey(stub, type, key);
+        byte[] resp = stub.getState(compositeKey);
+        if (resp == null) {
+            return Boolean.FALSE;
+        }
+        TableConfig table = loadTable(stub, type);
+        boolean isNew = table.isCounterSeeded() && isEmpty(resp);
+        log.debug(() -> "new value: " + ContractLogger.truncate(value));
+        if (value != null) {
+            validateSchema(stub, table, type, key, value);
+        }
+        writeAccumulated(stub, table, type, key, value);
+        if (value == null) {
             return Boolean.FALSE;
         }
-        Iterator<KeyValue> it = queryResult.iterator();
-        boolean exists = it.hasNext();
-        log.info("CommonContract.exists: " + exists);
-        return exists;
+        updateIndexes(stub, table, type, key, ValueCodec.decode(ChunkedValues.read(stub, type, key, resp)), value);
+        writeValue(stub, table, type, key, value);
+        if (isNew) {
+            adjustCounter(stub, type, 1);
+        }
+        return Boolean.TRUE;
     }
 
     /**
-     * Create new object with type, key and value.
-     * 在区块链上加载一条数据的所有历史记录
-     *
-     * @param context the context 智能合约上下文，需要定义在每一个方法的首参数，主要能进行数据查询，上链，事件，权限等操作，业务方无需关注
-     * @param type    the type 表名，合约数据存储到 CouchDB （类似 MongoDB）中的数据库表名，一般来说一个智能合约对应一张表，如用户信息智能合约存储到 user 表，不推荐一个智能合约的数据存储到多张表中，会导致查询语句非常复杂。
-     * @param key     the key 数据表中记录的唯一标识，如用户信息表中的 user_id 如 10001
-     * @return Chaincode.Response String
-     * @author XieXiongXiong
-     * @date 2021 -07-07 10:29:12
-     * <p>
-     * 对应 Fabric 命令行的调用示例：peer chaincode query -C mychannel -n basic -c '{"function":"history","Args":["user","10001"]}'
+     * 使用合并补丁更新一条数据，并按表配置更新累加状态，数据不存在时返回 false
      */
-    @Transaction(intent = Transaction.TYPE.EVALUATE)
-    public History[] history(Context context, String type, String key) {
-        log.info("CommonContract.history: type=" + type + ", key=" + key);
-        ChaincodeStub stub = context.getStub();
+    private Boolean patchRecord(ChaincodeStub stub, String type, String key, String patch) {
         String compositeKey = getCompositeKey(stub, type, key);
-        List<History> histories = new ArrayList<>();
+        String current = readValue(stub, type, key);
+        if (current == null || current.isEmpty()) {
+            return Boolean.FALSE;
+        }
+        String value = JsonMerger.mergePatch(current, patch);
+        TableConfig table = loadTable(stub, type);
+        validateSchema(stub, table, type, key, value);
+        if (table.getAccumulate() == TableConfig.AccumulateMode.ALWAYS) {
+            String addKey = getCompositeKey(stub, type + TYPE_ADD_SUFFIX, key);
+            String stringState = foldAccumulated(stub, table, type, key, true);
+            String view = JsonMerger.mergePatch(stringState == null || stringState.isEmpty() ? value : stringState,
+                    patch);
+            //按累加状态的格式重新输出，并写入 type 字段；补丁不是 json 对象时在此处报错，不会写入任何数据
+            String newValue = JsonMerger.merge(null, view, type + TYPE_ADD_SUFFIX);
+            stub.putStringState(addKey, newValue);
+        } else {
+            JsonMerger.requireObject(value);
+            deleteDeltas(stub, table, type, key);
+        }
+        updateIndexes(stub, table, type, key, current, value);
+        writeValue(stub, table, type, key, value);
+        return Boolean.TRUE;
+    }
+
+    /**
+     * 按表配置维护累加状态：always 模式合并写入，其他模式只校验 value 并清理 upsert 追加的增量
+     */
+    private void writeAccumulated(ChaincodeStub stub, TableConfig table, String type, String key, String value) {
+        if (table.getAccumulate() != TableConfig.AccumulateMode.ALWAYS) {
+            JsonMerger.requireObject(value);
+            deleteDeltas(stub, table, type, key);
+            return;
+        }
+        //获取前一个世界状态,更新累加状态
+        String addKey = getCompositeKey(stub, type + TYPE_ADD_SUFFIX, key);
+        String stringState = foldAccumulated(stub, table, type, key, true);
+        log.debug(() -> "old value:" + ContractLogger.truncate(stringState));
+        String newValue = JsonMerger.merge(stringState, value, type + TYPE_ADD_SUFFIX);
+        stub.delState(addKey);
+        stub.putStringState(addKey, newValue);
+    }
+
+    /**
+     * 按表配置读取累加状态，never 模式返回 null
+     */
+    private String readAccumulated(ChaincodeStub stub, TableConfig table, String type, String key) {
+        switch (table.getAccumulate()) {
+            case ALWAYS:
+                return foldAccumulated(stub, table, type, key, false);
+            case HISTORY:
+                return accumulateFromHistory(stub, type, key);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 根据数据的历史记录计算累加状态：Fabric 2.x 的历史记录按从新到旧返回，读到最近一次删除记录即停止，
+     * 再按时间正序合并这之后的各个版本（合并不满足结合律，不能从新到旧直接合并）
+     */
+    private String accumulateFromHistory(ChaincodeStub stub, String type, String key) {
+        Deque<String> versions = new ArrayDeque<>();
+        QueryResultsIterator<KeyModification> historyIterator = stub.getHistoryForKey(getCompositeKey(stub, type, key));
+        try {
+            for (KeyModification modification : historyIterator) {
+                if (modification.isDeleted()) {
+                    break;
+                }
+                versions.push(historyValue(modification));
+            }
+        } finally {
+            close(historyIterator);
+        }
+        String accumulated = null;
+        while (!versions.isEmpty()) {
+            accumulated = JsonMerger.merge(accumulated, versions.pop(), type + TYPE_ADD_SUFFIX);
+        }
+        return accumulated;
+    }
+
+    /**
+     * 读取 key 在某一时刻的值，历史记录按从新到旧读取，读到第一条不晚于该时刻的记录即停止
+     */
+    private String valueAsOf(ChaincodeStub stub, String compositeKey, long epochMillis) {
         QueryResultsIterator<KeyModification> historyIterator = stub.getHistoryForKey(compositeKey);
-        if (historyIterator != null) {
-            historyIterator.forEach(mod -> {
-                History his = new History();
+        try {
+            for (KeyModification mod : historyIterator) {
                 Instant timestamp = mod.getTimestamp();
-                if (timestamp != null) {
-                    his.setTimestamp(timestamp.toEpochMilli());
+                if (timestamp != null && timestamp.toEpochMilli() > epochMillis) {
+                    continue;
                 }
-                his.setTxId(mod.getTxId());
-                if (!mod.isDeleted()) {
-                    his.setValue(mod.getStringValue());
+                return mod.isDeleted() ? null : historyValue(mod);
+            }
+        } finally {
+            close(historyIterator);
+        }
+        return null;
+    }
+
+    /**
+     * 按存储编码解码历史记录中的值；分块保存的值在历史中只有清单，各块已被之后的写入覆盖或删除，
+     * 无法还原当时的值，直接拒绝而不是把清单当作数据返回。只用于必须得到值的 getAsOf/queryAsOf 和累加状态的计算，
+     * 列出历史版本时由 toHistory 标记 chunked 并跳过值
+     */
+    private String historyValue(KeyModification mod) {
+        byte[] value = mod.getValue();
+        if (ValueCodec.isChunked(value)) {
+            throw new ContractRuntimeException("The value written by " + mod.getTxId()
+                    + " is stored in chunks and can not be read from the history");
+        }
+        return ValueCodec.decode(value);
+    }
+
+    private History toHistory(KeyModification mod, boolean withValue) {
+        History his = new History();
+        Instant timestamp = mod.getTimestamp();
+        if (timestamp != null) {
+            his.setTimestamp(timestamp.toEpochMilli());
+        }
+        his.setTxId(mod.getTxId());
+        boolean chunked = !mod.isDeleted() && ValueCodec.isChunked(mod.getValue());
+        if (withValue && !mod.isDeleted() && !chunked) {
+            his.setValue(historyValue(mod));
+        }
+        his.setIsDelete(mod.isDeleted());
+        his.setChunked(chunked);
+        return his;
+    }
+
+    /**
+     * 读取一条数据，分块保存的数据重新拼接，并按存储编码解码
+     */
+    private String readValue(ChaincodeStub stub, String type, String key) {
+        return ValueCodec.decode(ChunkedValues.read(stub, type, key, stub.getState(getCompositeKey(stub, type, key))));
+    }
+
+    /**
+     * 解码范围扫描或 rich query 返回的一条数据，分块保存的数据根据组合主键重新拼接
+     */
+    private String decodeValue(ChaincodeStub stub, KeyValue keyValue) {
+        byte[] bytes = keyValue.getValue();
+        if (ValueCodec.isChunked(bytes)) {
+            List<String> attributes = stub.splitCompositeKey(keyValue.getKey()).getAttributes();
+            bytes = ChunkedValues.read(stub, attributes.get(0), attributes.get(1), bytes);
+        }
+        return ValueCodec.decode(bytes);
+    }
+
+    /**
+     * 按表配置编码并写入一条数据，编码后超过 chunkBytes 时分块保存；
+     * 旧值按存储内容判断是否分块，表配置关闭分块后覆盖写入也会删除旧块
+     */
+    private void writeValue(ChaincodeStub stub, TableConfig table, String type, String key, String value) {
+        String compositeKey = getCompositeKey(stub, type, key);
+        byte[] encoded = table.encode(value);
+        byte[] previous = stub.getState(compositeKey);
+        if (table.getChunkBytes() > 0) {
+            encoded = ChunkedValues.write(stub, type, key, encoded, table.getChunkBytes(), previous);
+        } else {
+            ChunkedValues.delete(stub, type, key, previous);
+        }
+        stub.putState(compositeKey, encoded);
+    }
+
+    /**
+     * 表注册了 schema 时校验写入的数据，编译后的 schema 按 schemaHash 缓存
+     */
+    private void validateSchema(ChaincodeStub stub, TableConfig table, String type, String key, String value) {
+        String hash = table.getSchemaHash();
+        if (hash == null) {
+            return;
+        }
+        Schema schema = SchemaValidator.get(hash,
+                () -> stub.getStringState(stub.createCompositeKey(SCHEMA, type).toString()));
+        SchemaValidator.validate(schema, type, key, value);
+    }
+
+    private TableConfig loadTable(ChaincodeStub stub, String type) {
+        return TableConfig.parse(type, TABLE, stub.getStringState(getCompositeTableKey(stub, type)));
+    }
+
+    /**
+     * 读取累加状态，并按时间顺序合并 upsert 追加的增量；consume 为 true 时删除已合并的增量，
+     * 调用方需要将返回值写回累加状态。表上没有执行过 upsert 时不扫描增量
+     */
+    private String foldAccumulated(ChaincodeStub stub, TableConfig table, String type, String key,
+            boolean consume) {
+        String accumulated = stub.getStringState(getCompositeKey(stub, type + TYPE_ADD_SUFFIX, key));
+        if (!hasUpserts(stub, table, type, consume)) {
+            return accumulated;
+        }
+        QueryResultsIterator<KeyValue> deltas = stub.getStateByPartialCompositeKey(ACCUMULATED_DELTA, type, key);
+        try {
+            for (KeyValue delta : deltas) {
+                accumulated = JsonMerger.merge(accumulated, delta.getStringValue(), type + TYPE_ADD_SUFFIX);
+                if (consume) {
+                    stub.delState(delta.getKey());
                 }
-                his.setIsDelete(mod.isDeleted());
-                histories.add(his);
-            });
+            }
+        } finally {
+            close(deltas);
+        }
+        return accumulated;
+    }
+
+    /**
+     * 表上是否执行过 upsert：只读取建表标记，没有标记的表不做增量的范围扫描，避免每次写入多一次范围查询和幻读校验。
+     * upsert 不读取 table~type，register 为 true 且表记录不存在时在此补写表记录，使按 table~type 查询表记录、configureTable 等能看到该表
+     */
+    private boolean hasUpserts(ChaincodeStub stub, TableConfig table, String type, boolean register) {
+        if (isEmpty(stub.getState(stub.createCompositeKey(UPSERT_TABLE_MARKER, type).toString()))) {
+            return false;
+        }
+        if (register && !table.isStored()) {
+            stub.putStringState(getCompositeTableKey(stub, type), table.toJson());
+        }
+        return true;
+    }
+
+    private void deleteDeltas(ChaincodeStub stub, TableConfig table, String type, String key) {
+        if (!hasUpserts(stub, table, type, true)) {
+            return;
+        }
+        QueryResultsIterator<KeyValue> deltas = stub.getStateByPartialCompositeKey(ACCUMULATED_DELTA, type, key);
+        try {
+            for (KeyValue delta : deltas) {
+                stub.delState(delta.getKey());
+            }
+        } finally {
+            close(deltas);
+        }
+    }
+
+    /**
+     * 删除一条数据及其累加状态，旧值为分块清单时（与当前表配置无关）同时删除各块
+     */
+    private Boolean deleteRecord(ChaincodeStub stub, String type, String key) {
+        String compositeKey = getCompositeKey(stub, type, key);
+        if (compositeKey == null) {
+            return Boolean.FALSE;
+        }
+        String addDataKey = getCompositeKey(stub, type + TYPE_ADD_SUFFIX, key);
+        TableConfig table = loadTable(stub, type);
+        if (table.isCounterSeeded() && !isEmpty(stub.getState(compositeKey))) {
+            adjustCounter(stub, type, -1);
+        }
+        if (!table.getIndexes().isEmpty()) {
+            updateIndexes(stub, table, type, key, readValue(stub, type, key), null);
+        }
+        ChunkedValues.delete(stub, type, key, stub.getState(compositeKey));
+        stub.delState(compositeKey);
+        stub.delState(addDataKey);
+        deleteDeltas(stub, table, type, key);
+        return Boolean.TRUE;
+    }
+
+    /**
+     * 按表配置维护二级索引：删除旧值的索引 key，写入新值的索引 key，值未变化的字段不写入
+     */
+    private void updateIndexes(ChaincodeStub stub, TableConfig table, String type, String key, String oldValue,
+            String newValue) {
+        List<String> indexes = table.getIndexes();
+        if (indexes.isEmpty()) {
+            return;
+        }
+        Map<String, String> before = Collections.emptyMap();
+        if (oldValue != null && !oldValue.isEmpty()) {
+            try {
+                before = JsonMerger.scalars(oldValue, indexes);
+            } catch (JsonParseException e) {
+                //旧数据不是 json 对象时没有索引需要删除
+                log.debug(() -> "CommonContract.updateIndexes: skip unparsable old value of " + key);
+            }
+        }
+        Map<String, String> after = newValue == null ? Collections.emptyMap() : JsonMerger.scalars(newValue, indexes);
+        for (String field : indexes) {
+            String oldField = before.get(field);
+            String newField = after.get(field);
+            if (Objects.equals(oldField, newField)) {
+                continue;
+            }
+            if (oldField != null) {
+                stub.delState(getIndexKey(stub, type, field, oldField, key));
+            }
+            if (newField != null) {
+                stub.putState(getIndexKey(stub, type, field, newField, key), INDEX_VALUE);
+            }
+        }
+    }
+
+    private long countRecords(ChaincodeStub stub, String type) {
+        long count = 0L;
+        QueryResultsIterator<KeyValue> shards = stub.getStateByPartialCompositeKey(COUNTER, type);
+        try {
+            for (KeyValue shard : shards) {
+                count += parseCounter(shard.getValue());
+            }
+        } finally {
+            close(shards);
+        }
+        return count;
+    }
+
+    /**
+     * 检查查询语句是否命中链码打包的 CouchDB 索引，未命中时记录告警；
+     * 配置了 COMMON_QUERY_UNINDEXED_MAX_RECORDS 且表的计数器已初始化时，拒绝在超过该记录数的表上执行未命中索引的查询
+     */
+    private void checkIndexed(ChaincodeStub stub, String query) {
+        String shape = INDEX_ADVISOR.check(query);
+        if (shape == null) {
+            return;
+        }
+        log.warning(() -> "CommonContract.checkIndexed: no index covers " + shape);
+        if (ContractConfig.QUERY_UNINDEXED_MAX_RECORDS < 1) {
+            return;
+        }
+        String type = QueryIndexAdvisor.selectorType(query);
+        if (type != null && loadTable(stub, type).isCounterSeeded()
+                && countRecords(stub, type) > ContractConfig.QUERY_UNINDEXED_MAX_RECORDS) {
+            throw new ContractRuntimeException("No index covers " + shape + " on table " + type + " larger than "
+                    + ContractConfig.QUERY_UNINDEXED_MAX_RECORDS + " records");
+        }
+    }
+
+    /**
+     * 在本交易的计数器分片上累加增量，分片 key 包含交易 id，不会与其他交易冲突
+     */
+    private void adjustCounter(ChaincodeStub stub, String type, long delta) {
+        String shardKey = stub.createCompositeKey(COUNTER, type, stub.getTxId()).toString();
+        long current = parseCounter(stub.getState(shardKey));
+        stub.putStringState(shardKey, Long.toString(current + delta));
+    }
+
+    private long parseCounter(byte[] bytes) {
+        if (isEmpty(bytes)) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(new String(bytes, StandardCharsets.UTF_8));
+        } catch (NumberFormatException e) {
+            throw new ContractRuntimeException("Invalid counter value", e);
+        }
+    }
+
+    private boolean isEmpty(byte[] bytes) {
+        return bytes == null || bytes.length < 1;
+    }
+
+    /**
+     * 关闭账本迭代器，释放 peer 端的查询资源
+     */
+    private void close(AutoCloseable iterator) {
+        if (iterator == null) {
+            return;
+        }
+        try {
+            iterator.close();
+        } catch (Exception e) {
+            log.error(() -> "close iterator failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 组装 get 返回的 {id,type,values} 结构
+     */
+    private Map<String, Object> toRecord(String type, String key, String value) {
+        Map<String, Object> map = new HashMap<>(16);
+        map.put("id", key);
+        map.put("type", type);
+        map.put("values", JsonUtil.parse(value));
+        return map;
+    }
+
+    /**
+     * 将一页查询结果转换为 {@link Query}，endKey 不为空时只保留小于 endKey 的记录
+     */
+    private Query toQuery(ChaincodeStub stub, QueryResultsIteratorWithMetadata<KeyValue> page, String endKey) {
+        List<String> values = new ArrayList<>();
+        //page 为 null 表示范围为空，不需要扫描
+        boolean reachedEnd = page == null;
+        QueryResponseMetadata metadata = null;
+        if (page != null) {
+            try {
+                for (KeyValue keyValue : page) {
+                    if (endKey != null && compareKeys(keyValue.getKey(), endKey) >= 0) {
+                        reachedEnd = true;
+                        break;
+                    }
+                    values.add(decodeValue(stub, keyValue));
+                }
+                metadata = page.getMetadata();
+            } finally {
+                close(page);
+            }
+        }
+        Query response = new Query();
+        response.setData(values.toArray(new String[0]));
+        QueryMeta meta = new QueryMeta();
+        meta.setRecordsCount(values.size());
+        meta.setBookmark(reachedEnd || metadata == null ? "" : metadata.getBookmark());
+        response.setMeta(meta);
+        return response;
+    }
+
+    /**
+     * 按 UTF-8 字节序比较 key，与账本中 key 的排序一致
+     */
+    private int compareKeys(String left, String right) {
+        byte[] a = left.getBytes(StandardCharsets.UTF_8);
+        byte[] b = right.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            int diff = (a[i] & 0xff) - (b[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    private int pageSize(Integer pageSize) {
+        return pageSize == null || pageSize < 1 ? ContractConfig.QUERY_PAGE_SIZE : pageSize;
+    }
+
+    /**
+     * 在 mongo 查询语句中指定只返回 _id，用于只关心记录条数的查询，语句无法解析时原样返回
+     */
+    private String keysOnly(String query) {
+        JsonArray fields = new JsonArray();
+        fields.add("_id");
+        return withFields(query, fields);
+    }
+
+    /**
+     * 在 mongo 查询语句中指定返回的字段，语句无法解析时原样返回
+     */
+    private String withFields(String query, JsonArray fields) {
+        try {
+            JsonElement element = JsonParser.parseString(query);
+            if (!element.isJsonObject()) {
+                return query;
+            }
+            element.getAsJsonObject().add("fields", fields);
+            return element.toString();
+        } catch (JsonParseException e) {
+            return query;
+        }
+    }
+
+    /**
+     * 解析字段路径参数，必须为非空的字符串 json 数组
+     */
+    private JsonArray parseFields(String fields) {
+        JsonElement element;
+        try {
+            element = JsonParser.parseString(fields);
+        } catch (JsonParseException e) {
+            throw new ContractRuntimeException("Fields must be a json array of field paths", e);
+        }
+        if (!element.isJsonArray() || element.getAsJsonArray().size() == 0) {
+            throw new ContractRuntimeException("Fields must be a non-empty json array of field paths");
+        }
+        for (JsonElement field : element.getAsJsonArray()) {
+            if (!field.isJsonPrimitive() || !field.getAsJsonPrimitive().isString() || field.getAsString().isEmpty()) {
+                throw new ContractRuntimeException("Invalid field path: " + field);
+            }
+        }
+        return element.getAsJsonArray();
+    }
+
+    /**
+     * 解析批量操作参数，并校验条数和字节数上限
+     */
+    private JsonArray parseBatch(String operations) {
+        if (operations == null) {
+            throw new ContractRuntimeException("Incorrect number of arguments. Expecting 1 [operations]");
+        }
+        int bytes = operations.getBytes(StandardCharsets.UTF_8).length;
+        if (bytes > ContractConfig.BATCH_MAX_BYTES) {
+            throw new ContractRuntimeException(
+                    "Batch payload too large: " + bytes + " bytes, limit " + ContractConfig.BATCH_MAX_BYTES);
+        }
+        JsonElement element;
+        try {
+            element = JsonParser.parseString(operations);
+        } catch (JsonParseException e) {
+            throw new ContractRuntimeException("Batch operations must be a json array", e);
+        }
+        if (!element.isJsonArray()) {
+            throw new ContractRuntimeException("Batch operations must be a json array");
+        }
+        JsonArray items = element.getAsJsonArray();
+        if (items.size() > ContractConfig.BATCH_MAX_SIZE) {
+            throw new ContractRuntimeException(
+                    "Batch too large: " + items.size() + " operations, limit " + ContractConfig.BATCH_MAX_SIZE);
+        }
+        return items;
+    }
+
+    private JsonObject batchItem(JsonArray items, int index) {
+        JsonElement item = items.get(index);
+        if (!item.isJsonObject()) {
+            throw new ContractRuntimeException("Batch operation " + index + " must be a json object");
+        }
+        return item.getAsJsonObject();
+    }
+
+    /**
+     * 读取批量操作的 value 并校验为 json 对象，在读取账本之前报错
+     */
+    private String batchValue(JsonObject item) {
+        String value = batchField(item, "value");
+        if (value != null) {
+            JsonMerger.requireObject(value);
+        }
+        return value;
+    }
+
+    /**
+     * 读取批量操作中的字段，对象类型的 value 转为 json 字符串
+     */
+    private String batchField(JsonObject item, String name) {
+        JsonElement field = item.get(name);
+        if (field == null || field.isJsonNull()) {
+            return null;
+        }
+        if (field.isJsonPrimitive()) {
+            return field.getAsString();
+        }
+        return field.toString();
+    }
+
+    /**
+     * 在批量操作的每一项开始前设置保存点
+     */
+    private void savepoint(ChaincodeStub stub) {
+        if (stub instanceof CachingChaincodeStub) {
+            ((CachingChaincodeStub) stub).savepoint();
+        }
+    }
+
+    /**
+     * 撤销批量操作中失败项已缓存的写操作；stub 不支持保存点时无法撤销，直接抛出异常使整笔交易失败
+     */
+    private void rollback(ChaincodeStub stub, RuntimeException e) {
+        if (!(stub instanceof CachingChaincodeStub)) {
+            throw e;
+        }
+        ((CachingChaincodeStub) stub).rollback();
+    }
+
+    private void release(ChaincodeStub stub) {
+        if (stub instanceof CachingChaincodeStub) {
+            ((CachingChaincodeStub) stub).release();
         }
-        log.info("CommonContract.history: " + JsonUtil.stringify(histories));
-        return histories.toArray(new History[histories.size()]);
     }
 
     /**
@@ -440,6 +2313,10 @@ public class CommonContract implements ContractInterface {
         throw new ContractRuntimeException("Create compositeKey failed");
     }
 
+    private String getIndexKey(ChaincodeStub stub, String type, String field, String value, String key) {
+        return stub.createCompositeKey(INDEX, type, field, value, key).toString();
+    }
+
     private String getCompositeTableKey(ChaincodeStub stub, String type) {
         if (type == null) {
             throw new ContractRuntimeException("Incorrect number of arguments. At least 1 [type, key, ...]");
@@ -0,0 +1,116 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+/**
+ * <p>
+ * The type Contract config.
+ * 合约运行参数，从链码进程的环境变量中读取，未配置时使用默认值
+ */
+public final class ContractConfig {
+
+	/**
+	 * 批量交易允许的最大操作条数
+	 */
+	public static final int BATCH_MAX_SIZE = intEnv("COMMON_BATCH_MAX_SIZE", 1000);
+
+	/**
+	 * 批量交易允许的最大参数字节数（UTF-8）
+	 */
+	public static final int BATCH_MAX_BYTES = intEnv("COMMON_BATCH_MAX_BYTES", 4 * 1024 * 1024);
+
+	/**
+	 * countUpTo 分页统计时每页的记录数
+	 */
+	public static final int COUNT_PAGE_SIZE = intEnv("COMMON_COUNT_PAGE_SIZE", 1000);
+
+	/**
+	 * 有界查询默认的最大返回记录数
+	 */
+	public static final int QUERY_MAX_RECORDS = intEnv("COMMON_QUERY_MAX_RECORDS", 1000);
+
+	/**
+	 * 有界查询默认的最大返回字节数
+	 */
+	public static final int QUERY_MAX_BYTES = intEnv("COMMON_QUERY_MAX_BYTES", 4 * 1024 * 1024);
+
+	/**
+	 * 有界查询默认的最大耗时（毫秒），应小于 peer 的链码执行超时时间
+	 */
+	public static final int QUERY_MAX_MILLIS = intEnv("COMMON_QUERY_MAX_MILLIS", 10000);
+
+	/**
+	 * 有界查询每次向 peer 拉取的分页大小
+	 */
+	public static final int QUERY_PAGE_SIZE = intEnv("COMMON_QUERY_PAGE_SIZE", 100);
+
+	/**
+	 * 未命中 CouchDB 索引的查询允许扫描的表的最大记录数，超过时拒绝查询；0 表示不拒绝，只记录告警。只对开启并初始化了计数器的表生效
+	 */
+	public static final int QUERY_UNINDEXED_MAX_RECORDS = intEnv("COMMON_QUERY_UNINDEXED_MAX_RECORDS", 0);
+
+	/**
+	 * 聚合查询允许的最大分组数
+	 */
+	public static final int AGGREGATE_MAX_GROUPS = intEnv("COMMON_AGGREGATE_MAX_GROUPS", 10000);
+
+	/**
+	 * 每个链码进程缓存的已编译 JSON Schema 数量
+	 */
+	public static final int SCHEMA_CACHE_SIZE = intEnv("COMMON_SCHEMA_CACHE_SIZE", 64);
+
+	/**
+	 * 每个链码进程缓存的已编译查询模板数量
+	 */
+	public static final int QUERY_TEMPLATE_CACHE_SIZE = intEnv("COMMON_QUERY_TEMPLATE_CACHE_SIZE", 256);
+
+	/**
+	 * Prometheus 文本格式指标的 HTTP 端口，0 表示不开启
+	 */
+	public static final int METRICS_PORT = intEnv("COMMON_METRICS_PORT", 0);
+
+	/**
+	 * 指标 HTTP 端口绑定的地址，默认只监听本机
+	 */
+	public static final String METRICS_HOST = stringEnv("COMMON_METRICS_HOST", "127.0.0.1");
+
+	/**
+	 * 允许调用 configureLogging 的客户端 MSP ID，未配置时 configureLogging 不可用
+	 */
+	public static final String LOG_ADMIN_MSPID = stringEnv("COMMON_LOG_ADMIN_MSPID", null);
+
+	private ContractConfig() {
+	}
+
+	/**
+	 * Read an int environment variable.
+	 *
+	 * @param name         the name
+	 * @param defaultValue the default value
+	 * @return the value
+	 */
+	static int intEnv(String name, int defaultValue) {
+		String value = System.getenv(name);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Read a string environment variable.
+	 *
+	 * @param name         the name
+	 * @param defaultValue the default value
+	 * @return the value
+	 */
+	static String stringEnv(String name, String defaultValue) {
+		String value = System.getenv(name);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		return value.trim();
+	}
+}
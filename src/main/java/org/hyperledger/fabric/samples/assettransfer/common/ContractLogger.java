@@ -0,0 +1,250 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import com.google.gson.JsonObject;
+import org.hyperledger.fabric.Logger;
+import org.hyperledger.fabric.contract.ContractRuntimeException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * <p>
+ * The type Contract logger.
+ * 合约的日志门面：日志内容通过 Supplier 延迟构建，级别未开启或未被采样时不会拼接任何字符串
+ * <p>
+ * 交易入口日志按交易方法采样，采样率来自 COMMON_LOG_SAMPLE_RATES（如 "query=0.01,get=0.1,*=1"，* 为默认采样率），
+ * 采样率 r 表示每 1/r 次记录一次，0 表示不记录；日志中的数据、查询语句等用 {@link #truncate(String)} 截断到
+ * COMMON_LOG_MAX_PAYLOAD 个字符。日志级别由 COMMON_LOG_LEVEL 设置，运行时可通过 configureLogging 交易修改
+ */
+public final class ContractLogger {
+
+	private static final String DEFAULT_RATE = "*";
+
+	private static final List<ContractLogger> LOGGERS = new CopyOnWriteArrayList<>();
+
+	private static final Map<String, AtomicLong> SAMPLE_COUNTERS = new ConcurrentHashMap<>();
+
+	private static volatile int maxPayload = ContractConfig.intEnv("COMMON_LOG_MAX_PAYLOAD", 256);
+
+	private static volatile Level level = envLevel();
+
+	/**
+	 * 交易方法到采样间隔的映射，间隔为 0 表示不记录
+	 */
+	private static volatile Map<String, Long> intervals = envRates();
+
+	private final Logger delegate;
+
+	private ContractLogger(Logger delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Gets the logger of the class.
+	 *
+	 * @param type the class
+	 * @return the contract logger
+	 */
+	public static ContractLogger getLogger(Class<?> type) {
+		ContractLogger logger = new ContractLogger(Logger.getLogger(type));
+		if (level != null) {
+			logger.delegate.setLevel(level);
+		}
+		LOGGERS.add(logger);
+		return logger;
+	}
+
+	/**
+	 * Log a sampled info message of a transaction function.
+	 *
+	 * @param function the transaction function
+	 * @param message  the message supplier
+	 */
+	public void info(String function, Supplier<String> message) {
+		if (delegate.isLoggable(Level.INFO) && sampled(function)) {
+			delegate.info(message.get());
+		}
+	}
+
+	/**
+	 * Log an info message.
+	 *
+	 * @param message the message supplier
+	 */
+	public void info(Supplier<String> message) {
+		delegate.info(message);
+	}
+
+	/**
+	 * Log a debug message.
+	 *
+	 * @param message the message supplier
+	 */
+	public void debug(Supplier<String> message) {
+		delegate.debug(message);
+	}
+
+	/**
+	 * Log a warning message.
+	 *
+	 * @param message the message supplier
+	 */
+	public void warning(Supplier<String> message) {
+		delegate.warning(message);
+	}
+
+	/**
+	 * Log an error message.
+	 *
+	 * @param message the message supplier
+	 */
+	public void error(Supplier<String> message) {
+		delegate.error(message);
+	}
+
+	/**
+	 * Truncate a payload to COMMON_LOG_MAX_PAYLOAD chars.
+	 *
+	 * @param payload the payload
+	 * @return the truncated payload
+	 */
+	public static String truncate(String payload) {
+		int max = maxPayload;
+		if (payload == null || payload.length() <= max) {
+			return payload;
+		}
+		return payload.substring(0, max) + "...(" + payload.length() + " chars)";
+	}
+
+	/**
+	 * Change the level, sample rates and max payload at runtime, null keeps the current setting.
+	 *
+	 * @param newLevel      the level, debug/info/warning/error/off or a java.util.logging level
+	 * @param newRates      the sample rates, such as "query=0.01,*=1"
+	 * @param newMaxPayload the max payload chars
+	 * @return the current settings json
+	 */
+	public static String configure(String newLevel, String newRates, Integer newMaxPayload) {
+		Level parsedLevel = parseLevel(newLevel);
+		Map<String, Long> parsedRates = newRates == null ? null : parseRates(newRates);
+		if (parsedLevel != null) {
+			level = parsedLevel;
+			for (ContractLogger logger : LOGGERS) {
+				logger.delegate.setLevel(parsedLevel);
+			}
+		}
+		if (parsedRates != null) {
+			intervals = parsedRates;
+		}
+		if (newMaxPayload != null && newMaxPayload > 0) {
+			maxPayload = newMaxPayload;
+		}
+		return settings();
+	}
+
+	/**
+	 * The current settings json.
+	 *
+	 * @return the string
+	 */
+	public static String settings() {
+		JsonObject json = new JsonObject();
+		Level current = level;
+		json.addProperty("level", current == null ? null : current.getName());
+		JsonObject rates = new JsonObject();
+		for (Map.Entry<String, Long> interval : new TreeMap<>(intervals).entrySet()) {
+			rates.addProperty(interval.getKey(), interval.getValue() == 0 ? 0 : 1.0 / interval.getValue());
+		}
+		json.add("sampleRates", rates);
+		json.addProperty("maxPayload", maxPayload);
+		return json.toString();
+	}
+
+	private static boolean sampled(String function) {
+		Map<String, Long> current = intervals;
+		Long interval = current.get(function);
+		if (interval == null) {
+			interval = current.get(DEFAULT_RATE);
+		}
+		if (interval == null || interval == 1) {
+			return true;
+		}
+		if (interval == 0) {
+			return false;
+		}
+		return SAMPLE_COUNTERS.computeIfAbsent(function, k -> new AtomicLong()).getAndIncrement() % interval == 0;
+	}
+
+	/**
+	 * 环境变量配置错误时与 ContractConfig 一样使用默认值，不影响链码启动
+	 */
+	private static Level envLevel() {
+		try {
+			return parseLevel(ContractConfig.stringEnv("COMMON_LOG_LEVEL", null));
+		} catch (ContractRuntimeException e) {
+			return null;
+		}
+	}
+
+	private static Map<String, Long> envRates() {
+		try {
+			return parseRates(ContractConfig.stringEnv("COMMON_LOG_SAMPLE_RATES", null));
+		} catch (ContractRuntimeException e) {
+			return parseRates(null);
+		}
+	}
+
+	private static Level parseLevel(String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return null;
+		}
+		switch (value.trim().toLowerCase(Locale.ROOT)) {
+			case "debug":
+				return Level.FINE;
+			case "warn":
+				return Level.WARNING;
+			case "error":
+				return Level.SEVERE;
+			default:
+				try {
+					return Level.parse(value.trim().toUpperCase(Locale.ROOT));
+				} catch (IllegalArgumentException e) {
+					throw new ContractRuntimeException("Invalid log level: " + value);
+				}
+		}
+	}
+
+	private static Map<String, Long> parseRates(String value) {
+		Map<String, Long> rates = new ConcurrentHashMap<>();
+		if (value == null || value.trim().isEmpty()) {
+			return rates;
+		}
+		List<String> invalid = new ArrayList<>();
+		for (String entry : value.split(",")) {
+			String[] pair = entry.split("=", 2);
+			try {
+				double rate = Double.parseDouble(pair[1].trim());
+				if (pair[0].trim().isEmpty() || rate < 0 || rate > 1) {
+					invalid.add(entry);
+				} else {
+					rates.put(pair[0].trim(), rate == 0 ? 0 : Math.max(1, Math.round(1 / rate)));
+				}
+			} catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+				invalid.add(entry);
+			}
+		}
+		if (!invalid.isEmpty()) {
+			throw new ContractRuntimeException("Invalid log sample rates " + invalid
+					+ ", expecting function=rate pairs with rate between 0 and 1");
+		}
+		return rates;
+	}
+}
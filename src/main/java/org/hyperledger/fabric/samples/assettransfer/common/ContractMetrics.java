@@ -0,0 +1,182 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * The type Contract metrics.
+ * 链码进程内按交易方法统计的指标：耗时直方图，以及 {@link CountingChaincodeStub} 统计的世界状态读写次数、字节数和查询记录数
+ * <p>
+ * 指标只在交易方法执行成功（afterTransaction）时记录，失败的交易没有回调，不计入。
+ * 通过 metrics 交易以 json 读取；配置 COMMON_METRICS_PORT 后同时在 /metrics 以 Prometheus 文本格式输出
+ */
+public final class ContractMetrics {
+
+	private static final ContractLogger log = ContractLogger.getLogger(ContractMetrics.class);
+
+	private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+	private final Map<String, FunctionMetrics> functions = new ConcurrentHashMap<>();
+
+	private ContractMetrics() {
+	}
+
+	/**
+	 * Create the metrics, and start the Prometheus endpoint when COMMON_METRICS_PORT is configured.
+	 *
+	 * @return the contract metrics
+	 */
+	public static ContractMetrics create() {
+		ContractMetrics metrics = new ContractMetrics();
+		if (ContractConfig.METRICS_PORT > 0) {
+			metrics.export(ContractConfig.METRICS_HOST, ContractConfig.METRICS_PORT);
+		}
+		return metrics;
+	}
+
+	/**
+	 * Record a finished transaction.
+	 *
+	 * @param function the transaction function
+	 * @param nanos    the elapsed nanos
+	 * @param io       the state access counters of the transaction
+	 */
+	public void record(String function, long nanos, CountingChaincodeStub io) {
+		FunctionMetrics metrics = functions.computeIfAbsent(function, k -> new FunctionMetrics());
+		metrics.latency.record(nanos / 1000);
+		metrics.gets.add(io.getGets());
+		metrics.puts.add(io.getPuts());
+		metrics.dels.add(io.getDels());
+		metrics.bytesRead.add(io.getBytesRead());
+		metrics.bytesWritten.add(io.getBytesWritten());
+		metrics.queryResults.add(io.getQueryResults());
+	}
+
+	/**
+	 * Metrics json, latencies are in microseconds.
+	 *
+	 * @return the string
+	 */
+	public String toJson() {
+		JsonObject result = new JsonObject();
+		for (Map.Entry<String, FunctionMetrics> entry : new TreeMap<>(functions).entrySet()) {
+			FunctionMetrics metrics = entry.getValue();
+			JsonObject latency = new JsonObject();
+			long count = metrics.latency.getCount();
+			latency.addProperty("count", count);
+			latency.addProperty("mean", count == 0 ? 0 : metrics.latency.getSum() / count);
+			for (double quantile : QUANTILES) {
+				latency.addProperty("p" + Math.round(quantile * 100), metrics.latency.valueAt(quantile));
+			}
+			latency.addProperty("max", metrics.latency.getMax());
+			JsonObject function = new JsonObject();
+			function.add("latencyMicros", latency);
+			function.addProperty("getState", metrics.gets.sum());
+			function.addProperty("putState", metrics.puts.sum());
+			function.addProperty("delState", metrics.dels.sum());
+			function.addProperty("bytesRead", metrics.bytesRead.sum());
+			function.addProperty("bytesWritten", metrics.bytesWritten.sum());
+			function.addProperty("queryResults", metrics.queryResults.sum());
+			result.add(entry.getKey(), function);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Metrics in the Prometheus text exposition format.
+	 *
+	 * @return the string
+	 */
+	public String toPrometheus() {
+		Map<String, FunctionMetrics> snapshot = new TreeMap<>(functions);
+		StringBuilder out = new StringBuilder();
+		out.append("# TYPE common_transaction_duration_seconds summary\n");
+		for (Map.Entry<String, FunctionMetrics> entry : snapshot.entrySet()) {
+			LatencyHistogram latency = entry.getValue().latency;
+			String label = "function=\"" + escape(entry.getKey()) + "\"";
+			for (double quantile : QUANTILES) {
+				out.append("common_transaction_duration_seconds{").append(label).append(",quantile=\"")
+						.append(quantile).append("\"} ").append(seconds(latency.valueAt(quantile))).append('\n');
+			}
+			out.append("common_transaction_duration_seconds_sum{").append(label).append("} ")
+					.append(seconds(latency.getSum())).append('\n');
+			out.append("common_transaction_duration_seconds_count{").append(label).append("} ")
+					.append(latency.getCount()).append('\n');
+		}
+		counter(out, snapshot, "common_state_get_total", m -> m.gets);
+		counter(out, snapshot, "common_state_put_total", m -> m.puts);
+		counter(out, snapshot, "common_state_del_total", m -> m.dels);
+		counter(out, snapshot, "common_state_read_bytes_total", m -> m.bytesRead);
+		counter(out, snapshot, "common_state_written_bytes_total", m -> m.bytesWritten);
+		counter(out, snapshot, "common_query_results_total", m -> m.queryResults);
+		return out.toString();
+	}
+
+	private void export(String host, int port) {
+		try {
+			HttpServer server = HttpServer.create(new InetSocketAddress(host, port), 0);
+			server.createContext("/metrics", exchange -> {
+				byte[] body = toPrometheus().getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			});
+			server.start();
+			log.info(() -> "ContractMetrics: serving /metrics on " + host + ":" + port);
+		} catch (IOException | IllegalArgumentException e) {
+			// 端口不可用时不影响链码运行，仍可通过 metrics 交易读取
+			log.warning(() -> "ContractMetrics: failed to serve /metrics on " + host + ":" + port + ", " + e);
+		}
+	}
+
+	private static void counter(StringBuilder out, Map<String, FunctionMetrics> snapshot, String name,
+			Function<FunctionMetrics, LongAdder> field) {
+		out.append("# TYPE ").append(name).append(" counter\n");
+		for (Map.Entry<String, FunctionMetrics> entry : snapshot.entrySet()) {
+			out.append(name).append("{function=\"").append(escape(entry.getKey())).append("\"} ")
+					.append(field.apply(entry.getValue()).sum()).append('\n');
+		}
+	}
+
+	private static String seconds(long micros) {
+		return String.format(Locale.ROOT, "%.6f", micros / 1e6);
+	}
+
+	private static String escape(String label) {
+		return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	/**
+	 * 一个交易方法的累计指标
+	 */
+	private static final class FunctionMetrics {
+
+		private final LatencyHistogram latency = new LatencyHistogram();
+
+		private final LongAdder gets = new LongAdder();
+
+		private final LongAdder puts = new LongAdder();
+
+		private final LongAdder dels = new LongAdder();
+
+		private final LongAdder bytesRead = new LongAdder();
+
+		private final LongAdder bytesWritten = new LongAdder();
+
+		private final LongAdder queryResults = new LongAdder();
+	}
+}
@@ -0,0 +1,242 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import org.hyperledger.fabric.contract.ContractRuntimeException;
+import org.hyperledger.fabric.protos.peer.ChaincodeShim.QueryResponseMetadata;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+import java.util.Iterator;
+
+/**
+ * <p>
+ * The type Counting chaincode stub.
+ * 统计一笔交易对 peer 的世界状态访问：getState/putState/delState 次数、读写字节数、范围扫描/rich query/历史查询返回的记录数
+ * <p>
+ * 包装在 {@link CachingChaincodeStub} 之下，统计的是实际发送给 peer 的请求，缓存命中的读取和被覆盖的写入不计入。
+ * 生命周期与一笔交易相同，不需要考虑并发
+ */
+public class CountingChaincodeStub extends DelegatingChaincodeStub {
+
+	private long gets;
+
+	private long puts;
+
+	private long dels;
+
+	private long bytesRead;
+
+	private long bytesWritten;
+
+	private long queryResults;
+
+	/**
+	 * Counting chaincode stub
+	 *
+	 * @param delegate delegate
+	 */
+	public CountingChaincodeStub(ChaincodeStub delegate) {
+		super(delegate);
+	}
+
+	@Override
+	public byte[] getState(String key) {
+		gets++;
+		byte[] value = delegate.getState(key);
+		if (value != null) {
+			bytesRead += value.length;
+		}
+		return value;
+	}
+
+	@Override
+	public void putState(String key, byte[] value) {
+		puts++;
+		if (value != null) {
+			bytesWritten += value.length;
+		}
+		delegate.putState(key, value);
+	}
+
+	@Override
+	public void delState(String key) {
+		dels++;
+		delegate.delState(key);
+	}
+
+	@Override
+	public QueryResultsIterator<KeyValue> getStateByRange(String startKey, String endKey) {
+		return new CountingIterator<>(delegate.getStateByRange(startKey, endKey), null);
+	}
+
+	@Override
+	public QueryResultsIteratorWithMetadata<KeyValue> getStateByRangeWithPagination(String startKey, String endKey,
+			int pageSize, String bookmark) {
+		QueryResultsIteratorWithMetadata<KeyValue> page = delegate.getStateByRangeWithPagination(startKey, endKey,
+				pageSize, bookmark);
+		return new CountingIterator<>(page, page);
+	}
+
+	@Override
+	public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(String compositeKey) {
+		return new CountingIterator<>(delegate.getStateByPartialCompositeKey(compositeKey), null);
+	}
+
+	@Override
+	public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(String objectType, String... attributes) {
+		return new CountingIterator<>(delegate.getStateByPartialCompositeKey(objectType, attributes), null);
+	}
+
+	@Override
+	public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(CompositeKey compositeKey) {
+		return new CountingIterator<>(delegate.getStateByPartialCompositeKey(compositeKey), null);
+	}
+
+	@Override
+	public QueryResultsIteratorWithMetadata<KeyValue> getStateByPartialCompositeKeyWithPagination(
+			CompositeKey compositeKey, int pageSize, String bookmark) {
+		QueryResultsIteratorWithMetadata<KeyValue> page = delegate.getStateByPartialCompositeKeyWithPagination(
+				compositeKey, pageSize, bookmark);
+		return new CountingIterator<>(page, page);
+	}
+
+	@Override
+	public QueryResultsIterator<KeyValue> getQueryResult(String query) {
+		return new CountingIterator<>(delegate.getQueryResult(query), null);
+	}
+
+	@Override
+	public QueryResultsIteratorWithMetadata<KeyValue> getQueryResultWithPagination(String query, int pageSize,
+			String bookmark) {
+		QueryResultsIteratorWithMetadata<KeyValue> page = delegate.getQueryResultWithPagination(query, pageSize,
+				bookmark);
+		return new CountingIterator<>(page, page);
+	}
+
+	@Override
+	public QueryResultsIterator<KeyModification> getHistoryForKey(String key) {
+		return new CountingIterator<>(delegate.getHistoryForKey(key), null);
+	}
+
+	/**
+	 * Gets the number of getState calls.
+	 *
+	 * @return the count
+	 */
+	public long getGets() {
+		return gets;
+	}
+
+	/**
+	 * Gets the number of putState calls.
+	 *
+	 * @return the count
+	 */
+	public long getPuts() {
+		return puts;
+	}
+
+	/**
+	 * Gets the number of delState calls.
+	 *
+	 * @return the count
+	 */
+	public long getDels() {
+		return dels;
+	}
+
+	/**
+	 * Gets the bytes read by getState and iterated results.
+	 *
+	 * @return the bytes
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * Gets the bytes written by putState.
+	 *
+	 * @return the bytes
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 * Gets the number of iterated range, query and history results.
+	 *
+	 * @return the count
+	 */
+	public long getQueryResults() {
+		return queryResults;
+	}
+
+	private void countResult(Object result) {
+		queryResults++;
+		byte[] value = result instanceof KeyValue ? ((KeyValue) result).getValue()
+				: result instanceof KeyModification ? ((KeyModification) result).getValue() : null;
+		if (value != null) {
+			bytesRead += value.length;
+		}
+	}
+
+	/**
+	 * 统计迭代返回记录数的迭代器，分页查询保留原迭代器的 metadata
+	 */
+	private final class CountingIterator<T> implements QueryResultsIterator<T>, QueryResultsIteratorWithMetadata<T> {
+
+		private final Iterable<T> results;
+
+		private final QueryResultsIteratorWithMetadata<T> page;
+
+		private CountingIterator(Iterable<T> results, QueryResultsIteratorWithMetadata<T> page) {
+			this.results = results;
+			this.page = page;
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+			Iterator<T> iterator = results.iterator();
+			return new Iterator<T>() {
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext();
+				}
+
+				@Override
+				public T next() {
+					T result = iterator.next();
+					countResult(result);
+					return result;
+				}
+			};
+		}
+
+		@Override
+		public QueryResponseMetadata getMetadata() {
+			return page == null ? null : page.getMetadata();
+		}
+
+		/**
+		 * 不声明 throws Exception，避免调用方的 try-with-resources 需要处理 InterruptedException；
+		 * 关闭时被中断则恢复中断标记后包装抛出
+		 */
+		@Override
+		public void close() {
+			try {
+				((AutoCloseable) results).close();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ContractRuntimeException("Interrupted while closing query results", e);
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new ContractRuntimeException("Failed to close query results", e);
+			}
+		}
+	}
+}
@@ -39,6 +39,12 @@ public class History {
 	@Property
 	private Boolean isDelete;
 
+	/**
+	 * Chunked, the value of a chunked version can not be read from the history
+	 */
+	@Property
+	private Boolean chunked;
+
 	/**
 	 * Gets tx id.
 	 *
@@ -127,9 +133,27 @@ public class History {
 		this.isDelete = isDelete;
 	}
 
+	/**
+	 * Gets chunked.
+	 *
+	 * @return the chunked
+	 */
+	public Boolean getChunked() {
+		return chunked;
+	}
+
+	/**
+	 * Sets chunked.
+	 *
+	 * @param chunked the chunked
+	 */
+	public void setChunked(Boolean chunked) {
+		this.chunked = chunked;
+	}
+
 	@Override
 	public int hashCode() {
-		return Objects.hash(getTxId(), getTimestamp(), getIsDelete(), getValue());
+		return Objects.hash(getTxId(), getTimestamp(), getIsDelete(), getChunked(), getValue());
 	}
 
 	@Override
@@ -144,13 +168,14 @@ public class History {
 
 		History other = (History) obj;
 
-		return Objects.deepEquals(new Object[] { getTxId(), getTimestamp(), getIsDelete(), getValue() },
-				new Object[] { other.getTxId(), other.getTimestamp(), other.getIsDelete(), other.getValue() });
+		return Objects.deepEquals(new Object[] { getTxId(), getTimestamp(), getIsDelete(), getChunked(), getValue() },
+				new Object[] { other.getTxId(), other.getTimestamp(), other.getIsDelete(), other.getChunked(),
+						other.getValue() });
 	}
 
 	@Override
 	public String toString() {
 		return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [txId=" + txId
-				+ ", timestamp=" + timestamp + ", isDelete=" + isDelete + ", value=" + value + "]";
+				+ ", timestamp=" + timestamp + ", isDelete=" + isDelete + ", chunked=" + chunked + ", value=" + value + "]";
 	}
 }
@@ -0,0 +1,91 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * <p>
+ * The type History page.
+ * 分页的历史记录，meta.bookmark 为本页最后一条记录的 txId，作为下一页的 cursorTxId
+ */
+@DataType
+public class HistoryPage {
+
+	/**
+	 * Data
+	 */
+	@Property
+	private History[] data;
+
+	/**
+	 * Meta
+	 */
+	@Property
+	private QueryMeta meta;
+
+	/**
+	 * Get data history [ ].
+	 *
+	 * @return the history [ ]
+	 */
+	public History[] getData() {
+		return data;
+	}
+
+	/**
+	 * Sets data.
+	 *
+	 * @param data the data
+	 */
+	public void setData(History[] data) {
+		this.data = data;
+	}
+
+	/**
+	 * Gets meta.
+	 *
+	 * @return the meta
+	 */
+	public QueryMeta getMeta() {
+		return meta;
+	}
+
+	/**
+	 * Sets meta.
+	 *
+	 * @param meta the meta
+	 */
+	public void setMeta(QueryMeta meta) {
+		this.meta = meta;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(getData(), getMeta());
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+
+		if ((obj == null) || (getClass() != obj.getClass())) {
+			return false;
+		}
+
+		HistoryPage other = (HistoryPage) obj;
+
+		return Objects.deepEquals(new Object[] { getData(), getMeta() },
+				new Object[] { other.getData(), other.getMeta() });
+	}
+
+	@Override
+	public String toString() {
+		return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [data="
+				+ Arrays.toString(data) + ", meta=" + meta + "]";
+	}
+}
@@ -0,0 +1,438 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * The type Json merger.
+ * 累加状态（_combination@~type）的流式合并组件
+ * <p>
+ * 输出与原先 Gson Map 方式逐字节一致：新值按字段浅覆盖旧值，字段顺序保持旧值在前、新增字段在后，
+ * type 字段写在其首次出现的位置（不存在则追加在末尾），数字按 Double 输出，null 字段被丢弃，html 字符被转义。
+ * 合并过程只缓存新值的顶层字段片段，不再构建中间 Map 树。
+ * <p>
+ * 组件无状态，JsonReader/JsonWriter 每次调用单独创建，可在多个交易线程间共享使用。
+ * 嵌套对象中的重复字段与 Gson 一样保留首次出现的位置和后出现的值，顶层重复字段与 Gson 一样直接报错。
+ */
+public final class JsonMerger {
+
+	private static final String TYPE_FIELD = "type";
+
+	private JsonMerger() {
+	}
+
+	/**
+	 * Merge the new document into the old accumulated document.
+	 *
+	 * @param oldJson the old accumulated json, null or empty if absent
+	 * @param newJson the new json
+	 * @param type    the value of the type field
+	 * @return the merged json
+	 */
+	public static String merge(String oldJson, String newJson, String type) {
+		try {
+			Map<String, String> fields = readFields(newJson);
+			StringWriter buffer = new StringWriter(newJson.length() + (oldJson == null ? 0 : oldJson.length()) + 64);
+			JsonWriter out = newWriter(buffer);
+			out.beginObject();
+			boolean typeWritten = false;
+			if (oldJson != null && !oldJson.isEmpty()) {
+				JsonReader in = newReader(oldJson);
+				Set<String> names = new HashSet<>();
+				in.beginObject();
+				while (in.hasNext()) {
+					String name = in.nextName();
+					if (!names.add(name)) {
+						throw new JsonSyntaxException("duplicate key: " + name);
+					}
+					if (TYPE_FIELD.equals(name)) {
+						in.skipValue();
+						fields.remove(name);
+						out.name(name).value(type);
+						typeWritten = true;
+					} else if (fields.containsKey(name)) {
+						in.skipValue();
+						writeFragment(out, name, fields.remove(name));
+					} else {
+						out.name(name);
+						copy(in, out);
+					}
+				}
+				in.endObject();
+				assertFullyConsumed(in);
+			}
+			for (Map.Entry<String, String> field : fields.entrySet()) {
+				if (TYPE_FIELD.equals(field.getKey())) {
+					out.name(TYPE_FIELD).value(type);
+					typeWritten = true;
+				} else {
+					writeFragment(out, field.getKey(), field.getValue());
+				}
+			}
+			if (!typeWritten) {
+				out.name(TYPE_FIELD).value(type);
+			}
+			out.endObject();
+			out.flush();
+			return buffer.toString();
+		} catch (IllegalStateException e) {
+			throw new JsonSyntaxException(e);
+		} catch (IOException e) {
+			throw new JsonSyntaxException(e);
+		}
+	}
+
+	/**
+	 * Check that the json is an object, without building any tree.
+	 * 校验 json 为对象，只做流式扫描
+	 *
+	 * @param json the json
+	 */
+	public static void requireObject(String json) {
+		try {
+			JsonReader in = newReader(json);
+			in.beginObject();
+			while (in.hasNext()) {
+				in.nextName();
+				in.skipValue();
+			}
+			in.endObject();
+			assertFullyConsumed(in);
+		} catch (IllegalStateException e) {
+			throw new JsonSyntaxException(e);
+		} catch (IOException e) {
+			throw new JsonSyntaxException(e);
+		}
+	}
+
+	/**
+	 * Project the json object to the given field paths in a streaming way.
+	 * 按字段路径流式裁剪 json 对象，路径用 "." 分隔嵌套字段，如 address.city；
+	 * 未选中的字段直接跳过不解析，选中的字段原样输出（数字保持原有写法，null 保留）
+	 *
+	 * @param json  the json object
+	 * @param paths the field paths
+	 * @return the projected json
+	 */
+	public static String project(String json, Collection<String> paths) {
+		Map<String, Object> tree = pathTree(paths);
+		try {
+			StringWriter buffer = new StringWriter(json.length());
+			JsonWriter out = newWriter(buffer);
+			out.setSerializeNulls(true);
+			JsonReader in = newReader(json);
+			project(in, out, tree);
+			assertFullyConsumed(in);
+			out.flush();
+			return buffer.toString();
+		} catch (IllegalStateException e) {
+			throw new JsonSyntaxException(e);
+		} catch (IOException e) {
+			throw new JsonSyntaxException(e);
+		}
+	}
+
+	/**
+	 * Read the scalar values of the given field paths in a streaming way.
+	 * 流式读取指定字段的标量值，字符串原样返回，数字保持原有写法，布尔值返回 true/false；
+	 * 字段不存在、为 null 或为对象/数组时不返回
+	 *
+	 * @param json  the json object
+	 * @param paths the field paths
+	 * @return the values by field path
+	 */
+	public static Map<String, String> scalars(String json, Collection<String> paths) {
+		Map<String, Object> tree = pathTree(paths);
+		Map<String, String> values = new HashMap<>();
+		try {
+			JsonReader in = newReader(json);
+			scalars(in, tree, values);
+			assertFullyConsumed(in);
+		} catch (IllegalStateException e) {
+			throw new JsonSyntaxException(e);
+		} catch (IOException e) {
+			throw new JsonSyntaxException(e);
+		}
+		return values;
+	}
+
+	private static void scalars(JsonReader in, Map<String, Object> tree, Map<String, String> values)
+			throws IOException {
+		in.beginObject();
+		while (in.hasNext()) {
+			Object node = tree.get(in.nextName());
+			JsonToken token = in.peek();
+			if (node instanceof String
+					&& (token == JsonToken.STRING || token == JsonToken.NUMBER || token == JsonToken.BOOLEAN)) {
+				values.put((String) node, token == JsonToken.BOOLEAN ? String.valueOf(in.nextBoolean()) : in.nextString());
+			} else if (node instanceof Map && token == JsonToken.BEGIN_OBJECT) {
+				scalars(in, castNode(node), values);
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+	}
+
+	private static void project(JsonReader in, JsonWriter out, Map<String, Object> tree) throws IOException {
+		in.beginObject();
+		out.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			Object node = tree.get(name);
+			if (node == null) {
+				in.skipValue();
+			} else if (node instanceof Map) {
+				if (in.peek() == JsonToken.BEGIN_OBJECT) {
+					out.name(name);
+					project(in, out, castNode(node));
+				} else {
+					in.skipValue();
+				}
+			} else {
+				out.name(name);
+				copyVerbatim(in, out);
+			}
+		}
+		in.endObject();
+		out.endObject();
+	}
+
+	/**
+	 * 把字段路径组织为树，中间节点为 Map，叶子节点为完整路径；已选中整个字段时忽略其子路径
+	 */
+	private static Map<String, Object> pathTree(Collection<String> paths) {
+		Map<String, Object> tree = new HashMap<>();
+		for (String path : paths) {
+			Map<String, Object> node = tree;
+			String[] names = path.split("\\.");
+			for (int i = 0; i < names.length - 1 && node != null; i++) {
+				Object child = node.get(names[i]);
+				if (child == null) {
+					child = new HashMap<String, Object>();
+					node.put(names[i], child);
+				}
+				node = child instanceof Map ? castNode(child) : null;
+			}
+			if (node != null) {
+				node.put(names[names.length - 1], path);
+			}
+		}
+		return tree;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> castNode(Object node) {
+		return (Map<String, Object>) node;
+	}
+
+	/**
+	 * 原样复制一个 json 值，数字保持原有写法
+	 */
+	private static void copyVerbatim(JsonReader in, JsonWriter out) throws IOException {
+		switch (in.peek()) {
+			case BEGIN_ARRAY:
+				in.beginArray();
+				out.beginArray();
+				while (in.hasNext()) {
+					copyVerbatim(in, out);
+				}
+				in.endArray();
+				out.endArray();
+				break;
+			case BEGIN_OBJECT:
+				in.beginObject();
+				out.beginObject();
+				while (in.hasNext()) {
+					out.name(in.nextName());
+					copyVerbatim(in, out);
+				}
+				in.endObject();
+				out.endObject();
+				break;
+			case STRING:
+				out.value(in.nextString());
+				break;
+			case NUMBER:
+				out.jsonValue(in.nextString());
+				break;
+			case BOOLEAN:
+				out.value(in.nextBoolean());
+				break;
+			case NULL:
+				in.nextNull();
+				out.nullValue();
+				break;
+			default:
+				throw new IllegalStateException("Unexpected token " + in.peek());
+		}
+	}
+
+	/**
+	 * Apply a JSON Merge Patch (RFC 7386) to the target document.
+	 * 按 RFC 7386 合并补丁：补丁中的 null 表示删除字段，嵌套对象递归合并，其他值直接替换
+	 *
+	 * @param targetJson the target json, null or empty if absent
+	 * @param patchJson  the merge patch json
+	 * @return the patched json
+	 */
+	public static String mergePatch(String targetJson, String patchJson) {
+		JsonElement target = targetJson == null || targetJson.isEmpty() ? null : JsonParser.parseString(targetJson);
+		return mergePatch(target, JsonParser.parseString(patchJson)).toString();
+	}
+
+	private static JsonElement mergePatch(JsonElement target, JsonElement patch) {
+		if (!patch.isJsonObject()) {
+			return patch;
+		}
+		JsonObject result = target != null && target.isJsonObject() ? target.getAsJsonObject() : new JsonObject();
+		for (Map.Entry<String, JsonElement> field : patch.getAsJsonObject().entrySet()) {
+			if (field.getValue().isJsonNull()) {
+				result.remove(field.getKey());
+			} else {
+				result.add(field.getKey(), mergePatch(result.get(field.getKey()), field.getValue()));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 读取顶层字段，值规范化为 json 片段，json null 记为 null
+	 */
+	private static Map<String, String> readFields(String json) throws IOException {
+		Map<String, String> fields = new LinkedHashMap<>();
+		JsonReader in = newReader(json);
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (fields.containsKey(name)) {
+				throw new JsonSyntaxException("duplicate key: " + name);
+			}
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				fields.put(name, null);
+			} else {
+				StringWriter fragment = new StringWriter();
+				copy(in, newWriter(fragment));
+				fields.put(name, fragment.toString());
+			}
+		}
+		in.endObject();
+		assertFullyConsumed(in);
+		return fields;
+	}
+
+	private static void writeFragment(JsonWriter out, String name, String fragment) throws IOException {
+		if (fragment != null) {
+			out.name(name).jsonValue(fragment);
+		}
+	}
+
+	/**
+	 * 按 Gson Object 适配器的规则复制一个 json 值：数字转为 Double，对象中的 null 字段由 writer 丢弃，
+	 * 对象中的重复字段保留首次出现的位置和后出现的值
+	 *
+	 * @param in  the reader
+	 * @param out the writer
+	 * @throws IOException the io exception
+	 */
+	static void copy(JsonReader in, JsonWriter out) throws IOException {
+		switch (in.peek()) {
+			case BEGIN_ARRAY:
+				in.beginArray();
+				out.beginArray();
+				while (in.hasNext()) {
+					copy(in, out);
+				}
+				in.endArray();
+				out.endArray();
+				break;
+			case BEGIN_OBJECT:
+				copyObject(in, out);
+				break;
+			case STRING:
+				out.value(in.nextString());
+				break;
+			case NUMBER:
+				double number = in.nextDouble();
+				if (Double.isNaN(number) || Double.isInfinite(number)) {
+					throw new IllegalArgumentException(number
+							+ " is not a valid double value as per JSON specification. To override this behavior,"
+							+ " use GsonBuilder.serializeSpecialFloatingPointValues() method.");
+				}
+				out.value(Double.valueOf(number));
+				break;
+			case BOOLEAN:
+				out.value(in.nextBoolean());
+				break;
+			case NULL:
+				in.nextNull();
+				out.nullValue();
+				break;
+			default:
+				throw new IllegalStateException("Unexpected token " + in.peek());
+		}
+	}
+
+	/**
+	 * 对象字段先缓存为 json 片段，出现重复字段时覆盖之前的片段，与 Gson 的 LinkedTreeMap 行为一致
+	 */
+	private static void copyObject(JsonReader in, JsonWriter out) throws IOException {
+		Map<String, String> fields = new LinkedHashMap<>();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				fields.put(name, null);
+			} else {
+				StringWriter fragment = new StringWriter();
+				copy(in, newWriter(fragment));
+				fields.put(name, fragment.toString());
+			}
+		}
+		in.endObject();
+		out.beginObject();
+		for (Map.Entry<String, String> field : fields.entrySet()) {
+			writeFragment(out, field.getKey(), field.getValue());
+		}
+		out.endObject();
+	}
+
+	static JsonReader newReader(String json) {
+		JsonReader reader = new JsonReader(new StringReader(json));
+		reader.setLenient(true);
+		return reader;
+	}
+
+	static JsonWriter newWriter(StringWriter buffer) {
+		JsonWriter writer = new JsonWriter(buffer);
+		writer.setLenient(true);
+		writer.setHtmlSafe(true);
+		writer.setSerializeNulls(false);
+		return writer;
+	}
+
+	private static void assertFullyConsumed(JsonReader in) throws IOException {
+		if (in.peek() != JsonToken.END_DOCUMENT) {
+			throw new JsonIOException("JSON document was not fully consumed.");
+		}
+	}
+}
@@ -1,8 +1,13 @@
 package org.hyperledger.fabric.samples.assettransfer.common;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 /**
  * <p>
@@ -44,4 +49,74 @@ public class JsonUtil {
 	public static byte[] payload(Object object) {
 		return stringify(object).getBytes(StandardCharsets.UTF_8);
 	}
+
+	/**
+	 * Parse json to object tree.
+	 *
+	 * @param json the json
+	 * @return the object
+	 */
+	public static Object parse(String json) {
+		return GS.fromJson(json, Object.class);
+	}
+
+	/**
+	 * Build the {id,type,values} envelope with the stored json spliced in verbatim.
+	 * 将账本中存储的 json 原样嵌入返回结构，不经过解析和再序列化
+	 *
+	 * @param type   the type
+	 * @param key    the key
+	 * @param values the stored json
+	 * @return the string
+	 */
+	public static String rawRecord(String type, String key, String values) {
+		StringWriter buffer = new StringWriter(values.length() + type.length() + key.length() + 32);
+		try {
+			JsonWriter out = new JsonWriter(buffer);
+			out.beginObject();
+			out.name("id").value(key);
+			out.name("type").value(type);
+			out.name("values").jsonValue(values);
+			out.endObject();
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return buffer.toString();
+	}
+
+	/**
+	 * Build the {data,meta} envelope of {@link Query} with the stored json documents spliced in verbatim.
+	 * 将查询结果中的 json 文档原样嵌入返回结构，data 为 json 对象数组而不是字符串数组
+	 *
+	 * @param data the stored json documents
+	 * @param meta the meta, may be null
+	 * @return the string
+	 */
+	public static String rawQuery(List<String> data, QueryMeta meta) {
+		StringWriter buffer = new StringWriter(64);
+		try {
+			JsonWriter out = new JsonWriter(buffer);
+			out.beginObject();
+			out.name("data").beginArray();
+			for (String value : data) {
+				out.jsonValue(value);
+			}
+			out.endArray();
+			if (meta != null) {
+				out.name("meta").beginObject();
+				out.name("recordsCount").value(meta.getRecordsCount());
+				out.name("bookmark").value(meta.getBookmark());
+				if (meta.getTruncated() != null) {
+					out.name("truncated").value(meta.getTruncated());
+				}
+				out.endObject();
+			}
+			out.endObject();
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return buffer.toString();
+	}
 }
@@ -0,0 +1,118 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * The type Latency histogram.
+ * 固定内存的对数-线性直方图（与 HdrHistogram 的分桶方式相同），记录以微秒为单位的耗时，线程安全
+ * <p>
+ * 32 微秒以下每微秒一个桶，之后每个 2 的幂区间再均分为 16 个桶，分位数的相对误差不超过 1/16，
+ * 共 960 个桶即可覆盖整个 long 范围，记录一次只需一次原子自增
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BITS = 4;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	private static final int LINEAR = SUB_BUCKETS * 2;
+
+	private static final int LINEAR_BITS = SUB_BITS + 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(LINEAR + (63 - LINEAR_BITS) * SUB_BUCKETS);
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder sum = new LongAdder();
+
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Record a value.
+	 *
+	 * @param micros the value in microseconds
+	 */
+	public void record(long micros) {
+		long value = Math.max(0, micros);
+		counts.incrementAndGet(index(value));
+		count.increment();
+		sum.add(value);
+		max.accumulateAndGet(value, Math::max);
+	}
+
+	/**
+	 * Gets the count.
+	 *
+	 * @return the count
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Gets the sum.
+	 *
+	 * @return the sum in microseconds
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * Gets the max.
+	 *
+	 * @return the max in microseconds
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * The value at the quantile, the highest value of its bucket and never above max.
+	 *
+	 * @param quantile the quantile, between 0 and 1
+	 * @return the value in microseconds, 0 when empty
+	 */
+	public long valueAt(double quantile) {
+		long total = 0;
+		long[] snapshot = new long[counts.length()];
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long seen = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(highestValue(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	private static int index(long value) {
+		if (value < LINEAR) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR + (exponent - LINEAR_BITS) * SUB_BUCKETS + sub;
+	}
+
+	private static long highestValue(int index) {
+		if (index < LINEAR) {
+			return index;
+		}
+		int exponent = (index - LINEAR) / SUB_BUCKETS + LINEAR_BITS;
+		long sub = (index - LINEAR) % SUB_BUCKETS;
+		long lowest = (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+		return lowest + (1L << (exponent - SUB_BITS)) - 1;
+	}
+}
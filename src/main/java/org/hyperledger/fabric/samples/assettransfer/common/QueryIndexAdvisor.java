@@ -0,0 +1,219 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * The type Query index advisor.
+ * 检查 mongo 查询语句能否使用链码打包的 CouchDB 索引，并按查询形态统计未命中索引的次数
+ * <p>
+ * 索引声明来自 classpath 中的 couchdb-indexes.json，与 gradle 任务 generateCouchDbIndexes 生成的
+ * META-INF/statedb/couchdb/indexes 一致：总是包含 ["type"] 索引，以及每个表声明的 ["type", 字段...] 索引。
+ * 按 CouchDB 的规则，索引的所有字段都出现在 selector 中、且排序字段都在索引中时视为命中；指定了 use_index 的查询不做检查。
+ * 这些索引只包含带 type 字段的文档（合约写入的表记录、累加状态，以及自带 type 字段的业务数据），
+ * 因此命中索引的查询同样只会返回这些文档
+ */
+public final class QueryIndexAdvisor {
+
+	private static final String RESOURCE = "/couchdb-indexes.json";
+
+	private static final String TYPE = "type";
+
+	private final List<List<String>> indexes;
+
+	private final Map<String, AtomicLong> uncovered = new ConcurrentHashMap<>();
+
+	/**
+	 * Query index advisor
+	 *
+	 * @param indexes the index field lists
+	 */
+	public QueryIndexAdvisor(List<List<String>> indexes) {
+		this.indexes = indexes;
+	}
+
+	/**
+	 * Load the index declarations from the classpath.
+	 *
+	 * @return the query index advisor
+	 */
+	public static QueryIndexAdvisor load() {
+		List<List<String>> indexes = new ArrayList<>();
+		indexes.add(Collections.singletonList(TYPE));
+		InputStream in = QueryIndexAdvisor.class.getResourceAsStream(RESOURCE);
+		if (in == null) {
+			return new QueryIndexAdvisor(indexes);
+		}
+		try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+			JsonElement types = JsonParser.parseReader(reader).getAsJsonObject().get("types");
+			if (types != null && types.isJsonObject()) {
+				for (Map.Entry<String, JsonElement> type : types.getAsJsonObject().entrySet()) {
+					for (JsonElement fields : type.getValue().getAsJsonArray()) {
+						List<String> index = new ArrayList<>();
+						index.add(TYPE);
+						if (fields.isJsonArray()) {
+							for (JsonElement field : fields.getAsJsonArray()) {
+								index.add(field.getAsString());
+							}
+						} else {
+							index.add(fields.getAsString());
+						}
+						if (!indexes.contains(index)) {
+							indexes.add(index);
+						}
+					}
+				}
+			}
+		} catch (IOException | JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+			// 索引声明无法读取时只使用默认的 type 索引
+		}
+		return new QueryIndexAdvisor(indexes);
+	}
+
+	/**
+	 * Check the query, and count it when no index covers it.
+	 *
+	 * @param query the mongo query json
+	 * @return the shape of the query when no index covers it, otherwise null
+	 */
+	public String check(String query) {
+		String shape = uncoveredShape(query);
+		if (shape != null) {
+			uncovered.computeIfAbsent(shape, k -> new AtomicLong()).incrementAndGet();
+		}
+		return shape;
+	}
+
+	/**
+	 * Check the query without counting it.
+	 *
+	 * @param query the mongo query json
+	 * @return the shape of the query when no index covers it, otherwise null
+	 */
+	public String uncoveredShape(String query) {
+		JsonObject json;
+		try {
+			JsonElement element = JsonParser.parseString(query);
+			if (!element.isJsonObject()) {
+				return null;
+			}
+			json = element.getAsJsonObject();
+		} catch (JsonParseException e) {
+			// 语句无法解析时交由 CouchDB 报错
+			return null;
+		}
+		if (json.has("use_index")) {
+			return null;
+		}
+		Set<String> selectorFields = new TreeSet<>();
+		JsonElement selector = json.get("selector");
+		if (selector != null && selector.isJsonObject()) {
+			collectFields(selector.getAsJsonObject(), "", selectorFields);
+		}
+		List<String> sortFields = sortFields(json.get("sort"));
+		for (List<String> index : indexes) {
+			if (selectorFields.containsAll(index) && index.containsAll(sortFields)) {
+				return null;
+			}
+		}
+		return "selector" + selectorFields + " sort" + sortFields;
+	}
+
+	/**
+	 * The uncovered query shapes and their counts since the chaincode started.
+	 *
+	 * @return the counts by query shape
+	 */
+	public Map<String, Long> report() {
+		Map<String, Long> report = new TreeMap<>();
+		for (Map.Entry<String, AtomicLong> entry : uncovered.entrySet()) {
+			report.put(entry.getKey(), entry.getValue().get());
+		}
+		return report;
+	}
+
+	/**
+	 * The string value of selector.type, or null.
+	 *
+	 * @param query the mongo query json
+	 * @return the type
+	 */
+	public static String selectorType(String query) {
+		try {
+			JsonElement selector = JsonParser.parseString(query).getAsJsonObject().get("selector");
+			JsonElement type = selector == null || !selector.isJsonObject() ? null : selector.getAsJsonObject().get(TYPE);
+			if (type != null && type.isJsonObject() && type.getAsJsonObject().has("$eq")) {
+				type = type.getAsJsonObject().get("$eq");
+			}
+			return type != null && type.isJsonPrimitive() ? type.getAsString() : null;
+		} catch (JsonParseException | IllegalStateException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * 收集 selector 中的字段，$and 中的条件视为同一层，$or/$nor 等操作符无法直接使用索引，忽略
+	 */
+	private static void collectFields(JsonObject selector, String prefix, Set<String> fields) {
+		for (Map.Entry<String, JsonElement> entry : selector.entrySet()) {
+			String name = entry.getKey();
+			JsonElement value = entry.getValue();
+			if ("$and".equals(name) && value.isJsonArray()) {
+				for (JsonElement condition : value.getAsJsonArray()) {
+					if (condition.isJsonObject()) {
+						collectFields(condition.getAsJsonObject(), prefix, fields);
+					}
+				}
+			} else if (!name.startsWith("$")) {
+				if (value.isJsonObject() && !isOperators(value.getAsJsonObject())) {
+					collectFields(value.getAsJsonObject(), prefix + name + ".", fields);
+				} else {
+					fields.add(prefix + name);
+				}
+			}
+		}
+	}
+
+	private static boolean isOperators(JsonObject value) {
+		for (String name : value.keySet()) {
+			if (name.startsWith("$")) {
+				return true;
+			}
+		}
+		return value.size() == 0;
+	}
+
+	private static List<String> sortFields(JsonElement sort) {
+		if (sort == null || !sort.isJsonArray()) {
+			return Collections.emptyList();
+		}
+		List<String> fields = new ArrayList<>();
+		for (JsonElement field : (JsonArray) sort) {
+			if (field.isJsonPrimitive()) {
+				fields.add(field.getAsString());
+			} else if (field.isJsonObject()) {
+				fields.addAll(field.getAsJsonObject().keySet());
+			}
+		}
+		return fields;
+	}
+}
@@ -28,6 +28,12 @@ public class QueryMeta {
 	@Property
 	private String bookmark;
 
+	/**
+	 * Truncated 结果因记录数、字节数或耗时上限被截断，可使用 bookmark 继续查询
+	 */
+	@Property
+	private Boolean truncated;
+
 	/**
 	 * Gets records count.
 	 *
@@ -72,9 +78,27 @@ public class QueryMeta {
 		this.bookmark = bookmark;
 	}
 
+	/**
+	 * Gets truncated.
+	 *
+	 * @return the truncated
+	 */
+	public Boolean getTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * Sets truncated.
+	 *
+	 * @param truncated the truncated
+	 */
+	public void setTruncated(Boolean truncated) {
+		this.truncated = truncated;
+	}
+
 	@Override
 	public int hashCode() {
-		return Objects.hash(getRecordsCount(), getBookmark());
+		return Objects.hash(getRecordsCount(), getBookmark(), getTruncated());
 	}
 
 	@Override
@@ -89,13 +113,13 @@ public class QueryMeta {
 
 		QueryMeta other = (QueryMeta) obj;
 
-		return Objects.deepEquals(new Object[] { getRecordsCount(), getBookmark() },
-				new Object[] { other.getRecordsCount(), other.getBookmark() });
+		return Objects.deepEquals(new Object[] { getRecordsCount(), getBookmark(), getTruncated() },
+				new Object[] { other.getRecordsCount(), other.getBookmark(), other.getTruncated() });
 	}
 
 	@Override
 	public String toString() {
 		return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [recordsCount="
-				+ recordsCount + ", bookmark=" + bookmark + "]";
+				+ recordsCount + ", bookmark=" + bookmark + ", truncated=" + truncated + "]";
 	}
 }
@@ -0,0 +1,200 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.hyperledger.fabric.contract.ContractRuntimeException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * The type Query template.
+ * 命名的参数化 mongo 查询模板，参数占位符为整个 json 字符串值 "${name}"，如 {"selector":{"type":"user","age":{"$gt":"${minAge}"}}}
+ * <p>
+ * 绑定参数时在解析后的 json 树上替换占位符，而不是拼接字符串；参数值只能是字符串、数字、布尔、null 或由它们组成的数组，
+ * 不能是对象，因此参数无法注入 $or、$regex 等操作符，也无法改变查询的字段。
+ * 编译后的模板按模板名和内容的 SHA-256 缓存在链码进程中（LRU），模板被重新注册后自动使用新的版本
+ */
+public final class QueryTemplate {
+
+	private static final Pattern PLACEHOLDER = Pattern.compile("^\\$\\{([A-Za-z_][A-Za-z0-9_]*)}$");
+
+	private static final Map<String, QueryTemplate> CACHE = new LinkedHashMap<String, QueryTemplate>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, QueryTemplate> eldest) {
+			return size() > ContractConfig.QUERY_TEMPLATE_CACHE_SIZE;
+		}
+	};
+
+	private final String name;
+
+	private final JsonObject template;
+
+	private final Set<String> params;
+
+	private QueryTemplate(String name, JsonObject template, Set<String> params) {
+		this.name = name;
+		this.template = template;
+		this.params = params;
+	}
+
+	/**
+	 * Parse and validate the template.
+	 *
+	 * @param name     the name
+	 * @param template the template json
+	 * @return the query template
+	 */
+	public static QueryTemplate compile(String name, String template) {
+		JsonElement element;
+		try {
+			element = JsonParser.parseString(template);
+		} catch (JsonParseException e) {
+			throw new ContractRuntimeException("Query template " + name + " must be a json object", e);
+		}
+		if (!element.isJsonObject()) {
+			throw new ContractRuntimeException("Query template " + name + " must be a json object");
+		}
+		JsonObject json = element.getAsJsonObject();
+		if (!json.has("selector") || !json.get("selector").isJsonObject()) {
+			throw new ContractRuntimeException("Query template " + name + " must contain a selector object");
+		}
+		Set<String> params = new TreeSet<>();
+		collectParams(json, params);
+		return new QueryTemplate(name, json, Collections.unmodifiableSet(params));
+	}
+
+	/**
+	 * Gets the compiled template of the stored template text, compiling it only when not cached.
+	 *
+	 * @param name     the name
+	 * @param template the stored template json
+	 * @return the query template
+	 */
+	public static QueryTemplate get(String name, String template) {
+		String cacheKey = name + "@" + ChunkedValues.sha256(template.getBytes(StandardCharsets.UTF_8));
+		synchronized (CACHE) {
+			QueryTemplate cached = CACHE.get(cacheKey);
+			if (cached != null) {
+				return cached;
+			}
+		}
+		QueryTemplate compiled = compile(name, template);
+		synchronized (CACHE) {
+			CACHE.put(cacheKey, compiled);
+		}
+		return compiled;
+	}
+
+	/**
+	 * Gets the parameter names.
+	 *
+	 * @return the params
+	 */
+	public Set<String> getParams() {
+		return params;
+	}
+
+	/**
+	 * Bind the parameters, every parameter must be given and unknown parameters are rejected.
+	 *
+	 * @param paramsJson the parameters json object, may be null or empty when the template has no parameter
+	 * @return the mongo query json
+	 */
+	public String bind(String paramsJson) {
+		JsonObject values = new JsonObject();
+		if (paramsJson != null && !paramsJson.isEmpty()) {
+			try {
+				JsonElement element = JsonParser.parseString(paramsJson);
+				if (!element.isJsonObject()) {
+					throw new ContractRuntimeException("Query params must be a json object");
+				}
+				values = element.getAsJsonObject();
+			} catch (JsonParseException e) {
+				throw new ContractRuntimeException("Query params must be a json object", e);
+			}
+		}
+		for (Map.Entry<String, JsonElement> value : values.entrySet()) {
+			if (!params.contains(value.getKey())) {
+				throw new ContractRuntimeException("Unknown param " + value.getKey() + " of query " + name);
+			}
+			checkValue(value.getKey(), value.getValue());
+		}
+		for (String param : params) {
+			if (!values.has(param)) {
+				throw new ContractRuntimeException("Missing param " + param + " of query " + name);
+			}
+		}
+		return substitute(template, values).toString();
+	}
+
+	private static void collectParams(JsonElement element, Set<String> params) {
+		if (element.isJsonObject()) {
+			for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+				collectParams(entry.getValue(), params);
+			}
+		} else if (element.isJsonArray()) {
+			for (JsonElement item : element.getAsJsonArray()) {
+				collectParams(item, params);
+			}
+		} else {
+			String param = paramOf(element);
+			if (param != null) {
+				params.add(param);
+			}
+		}
+	}
+
+	private static JsonElement substitute(JsonElement element, JsonObject values) {
+		if (element.isJsonObject()) {
+			JsonObject result = new JsonObject();
+			for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+				result.add(entry.getKey(), substitute(entry.getValue(), values));
+			}
+			return result;
+		}
+		if (element.isJsonArray()) {
+			JsonArray result = new JsonArray();
+			for (JsonElement item : element.getAsJsonArray()) {
+				result.add(substitute(item, values));
+			}
+			return result;
+		}
+		String param = paramOf(element);
+		return param == null ? element : values.get(param).deepCopy();
+	}
+
+	private static String paramOf(JsonElement element) {
+		if (!element.isJsonPrimitive() || !element.getAsJsonPrimitive().isString()) {
+			return null;
+		}
+		Matcher matcher = PLACEHOLDER.matcher(element.getAsString());
+		return matcher.matches() ? matcher.group(1) : null;
+	}
+
+	private void checkValue(String param, JsonElement value) {
+		if (value.isJsonArray()) {
+			for (JsonElement item : value.getAsJsonArray()) {
+				if (item.isJsonObject() || item.isJsonArray()) {
+					throw new ContractRuntimeException("Param " + param + " of query " + name
+							+ " must be a json primitive or an array of primitives");
+				}
+			}
+		} else if (value.isJsonObject()) {
+			throw new ContractRuntimeException("Param " + param + " of query " + name
+					+ " must be a json primitive or an array of primitives");
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import org.everit.json.schema.Schema;
+import org.everit.json.schema.SchemaException;
+import org.everit.json.schema.ValidationException;
+import org.everit.json.schema.loader.SchemaClient;
+import org.everit.json.schema.loader.SchemaLoader;
+import org.hyperledger.fabric.contract.ContractRuntimeException;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * The type Schema validator.
+ * 按表注册的 JSON Schema 校验写入的数据，编译后的 Schema 按内容的 SHA-256 缓存在链码进程中（LRU）
+ * <p>
+ * 表记录中只保存 schemaHash，缓存命中时不需要读取 schema 本身；由于每次写入都会读取表记录，
+ * 并发修改 schema 的交易仍会产生读写冲突。缓存以内容摘要为键，不同背书节点上的缓存内容总是一致的
+ * <p>
+ * 只允许文档内的 $ref（以 # 开头），编译时的 SchemaClient 拒绝所有外部引用：链码不能访问网络，
+ * 各背书节点读到的外部 schema 也可能不同，会导致背书结果不一致
+ */
+public final class SchemaValidator {
+
+	private static final int MAX_MESSAGES = 10;
+
+	private static final String REF = "$ref";
+
+	/**
+	 * 值为数据而不是子 schema 的关键字，其中的 $ref 字段不是引用
+	 */
+	private static final Set<String> DATA_KEYWORDS = new HashSet<>(Arrays.asList("enum", "const", "default", "examples"));
+
+	private static final SchemaClient LOCAL_ONLY = url -> {
+		throw new ContractRuntimeException("Remote schema reference is not allowed: " + url);
+	};
+
+	private static final Map<String, Schema> CACHE = new LinkedHashMap<String, Schema>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Schema> eldest) {
+			return size() > ContractConfig.SCHEMA_CACHE_SIZE;
+		}
+	};
+
+	private SchemaValidator() {
+	}
+
+	/**
+	 * The content hash of a schema.
+	 *
+	 * @param schemaJson the schema json
+	 * @return the SHA-256 hex
+	 */
+	public static String hash(String schemaJson) {
+		return ChunkedValues.sha256(schemaJson.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Compile the schema and put it into the cache, schemas with remote references are rejected.
+	 *
+	 * @param schemaJson the schema json
+	 * @return the content hash
+	 */
+	public static String register(String schemaJson) {
+		String hash = hash(schemaJson);
+		Schema schema = compile(schemaJson);
+		synchronized (CACHE) {
+			CACHE.put(hash, schema);
+		}
+		return hash;
+	}
+
+	/**
+	 * Gets the compiled schema, reading and compiling it from the source only when not cached.
+	 *
+	 * @param hash   the content hash
+	 * @param source the source of the schema json
+	 * @return the schema
+	 */
+	public static Schema get(String hash, Supplier<String> source) {
+		synchronized (CACHE) {
+			Schema schema = CACHE.get(hash);
+			if (schema != null) {
+				return schema;
+			}
+		}
+		String schemaJson = source.get();
+		if (schemaJson == null || schemaJson.isEmpty() || !hash.equals(hash(schemaJson))) {
+			throw new ContractRuntimeException("Registered schema does not match schemaHash " + hash);
+		}
+		Schema schema = compile(schemaJson);
+		synchronized (CACHE) {
+			CACHE.put(hash, schema);
+		}
+		return schema;
+	}
+
+	/**
+	 * Validate the value, throws with the violations when invalid.
+	 *
+	 * @param schema the schema
+	 * @param type   the type
+	 * @param key    the key
+	 * @param value  the json value
+	 */
+	public static void validate(Schema schema, String type, String key, String value) {
+		Object json;
+		try {
+			json = new JSONTokener(value).nextValue();
+		} catch (JSONException e) {
+			throw new ContractRuntimeException("Invalid json value of " + type + " " + key, e);
+		}
+		try {
+			schema.validate(json);
+		} catch (ValidationException e) {
+			List<String> messages = e.getAllMessages();
+			if (messages.size() > MAX_MESSAGES) {
+				messages = messages.subList(0, MAX_MESSAGES);
+			}
+			throw new ContractRuntimeException("Schema validation failed for " + type + " " + key + ": "
+					+ String.join("; ", messages), e);
+		}
+	}
+
+	private static Schema compile(String schemaJson) {
+		try {
+			JSONObject json = new JSONObject(new JSONTokener(schemaJson));
+			requireLocalRefs(json);
+			return SchemaLoader.builder().schemaJson(json).schemaClient(LOCAL_ONLY).build().load().build();
+		} catch (JSONException | SchemaException e) {
+			throw new ContractRuntimeException("Invalid json schema: " + e.getMessage(), e);
+		}
+	}
+
+	private static void requireLocalRefs(Object node) {
+		if (node instanceof JSONObject) {
+			JSONObject object = (JSONObject) node;
+			for (String name : object.keySet()) {
+				Object value = object.get(name);
+				if (REF.equals(name) && value instanceof String && !((String) value).startsWith("#")) {
+					throw new ContractRuntimeException("Remote schema reference is not allowed: " + value);
+				}
+				if (!DATA_KEYWORDS.contains(name)) {
+					requireLocalRefs(value);
+				}
+			}
+		} else if (node instanceof JSONArray) {
+			for (Object item : (JSONArray) node) {
+				requireLocalRefs(item);
+			}
+		}
+	}
+}
@@ -0,0 +1,363 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.hyperledger.fabric.contract.ContractRuntimeException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * <p>
+ * The type Table config.
+ * 表配置，保存在 table~type 记录中，与 tableName、type 字段放在同一个 json 对象里
+ * <p>
+ * 支持的配置：accumulate 累加状态维护方式；indexes 由合约维护的二级索引字段列表，如 ["status","ownerId"]；
+ * codec 数据的存储压缩方式 none/deflate/gzip，codecMinBytes 小于该字节数的数据不压缩（默认 1024）；
+ * chunkBytes 编码后超过该字节数的数据分块保存（默认 0 不分块），历史记录中只有分块清单，不能与 accumulate=history 同时使用；
+ * format 数据的保存格式 json/cbor；counter 是否维护记录数计数器（默认 false）
+ * <p>
+ * schemaHash 为 registerSchema 注册的 JSON Schema 的 SHA-256，只能通过 registerSchema 修改；
+ * counterSeeded 表示计数器已由 seedCounter 按已有数据初始化，只能通过 seedCounter 设置，关闭 counter 时清除
+ * <p>
+ * 未配置的字段使用默认值，因此已有的表记录 {"tableName":"user","type":"table~type"} 保持原有行为
+ */
+public final class TableConfig {
+
+	/**
+	 * 累加状态的维护方式
+	 */
+	public enum AccumulateMode {
+		/**
+		 * 每次写入时合并并保存累加状态（默认，与原有行为一致）
+		 */
+		ALWAYS,
+		/**
+		 * 不维护累加状态
+		 */
+		NEVER,
+		/**
+		 * 不保存累加状态，读取时根据数据的历史记录实时计算；每次读取都要读出并解码最近一次删除之后的全部版本，
+		 * 读取耗时随修改次数线性增长，只适合修改次数有限的数据
+		 */
+		HISTORY
+	}
+
+	private static final String ACCUMULATE = "accumulate";
+
+	private static final String INDEXES = "indexes";
+
+	private static final String CODEC = "codec";
+
+	private static final String CODEC_MIN_BYTES = "codecMinBytes";
+
+	private static final int DEFAULT_CODEC_MIN_BYTES = 1024;
+
+	private static final String CHUNK_BYTES = "chunkBytes";
+
+	private static final String FORMAT = "format";
+
+	private static final String SCHEMA_HASH = "schemaHash";
+
+	private static final String COUNTER = "counter";
+
+	private static final String COUNTER_SEEDED = "counterSeeded";
+
+	private static final String TABLE_NAME = "tableName";
+
+	private static final String TYPE = "type";
+
+	private final JsonObject json;
+
+	private final boolean stored;
+
+	private final AccumulateMode accumulate;
+
+	private final List<String> indexes;
+
+	private final ValueCodec.Codec codec;
+
+	private final int codecMinBytes;
+
+	private final int chunkBytes;
+
+	private final ValueCodec.Format format;
+
+	private final boolean counter;
+
+	private TableConfig(JsonObject json, boolean stored) {
+		this.json = json;
+		this.stored = stored;
+		this.accumulate = parseMode(json.get(ACCUMULATE));
+		this.indexes = parseIndexes(json.get(INDEXES));
+		this.codec = parseCodec(json.get(CODEC));
+		this.codecMinBytes = parseBytes(CODEC_MIN_BYTES, json.get(CODEC_MIN_BYTES), DEFAULT_CODEC_MIN_BYTES);
+		this.chunkBytes = parseBytes(CHUNK_BYTES, json.get(CHUNK_BYTES), 0);
+		this.format = parseFormat(json.get(FORMAT));
+		this.counter = parseBoolean(COUNTER, json.get(COUNTER));
+	}
+
+	/**
+	 * Default table record of type.
+	 *
+	 * @param type      the type
+	 * @param tableType the object type of table records
+	 * @return the table config
+	 */
+	public static TableConfig of(String type, String tableType) {
+		JsonObject json = new JsonObject();
+		json.addProperty(TABLE_NAME, type);
+		json.addProperty(TYPE, tableType);
+		return new TableConfig(json, false);
+	}
+
+	/**
+	 * Parse the table record, falls back to the default record when absent.
+	 *
+	 * @param type      the type
+	 * @param tableType the object type of table records
+	 * @param record    the stored table record, may be null or empty
+	 * @return the table config
+	 */
+	public static TableConfig parse(String type, String tableType, String record) {
+		if (record == null || record.isEmpty()) {
+			return of(type, tableType);
+		}
+		try {
+			JsonElement element = JsonParser.parseString(record);
+			if (!element.isJsonObject()) {
+				throw new ContractRuntimeException("Invalid table record of " + type);
+			}
+			return new TableConfig(element.getAsJsonObject(), true);
+		} catch (JsonParseException e) {
+			throw new ContractRuntimeException("Invalid table record of " + type, e);
+		}
+	}
+
+	/**
+	 * Apply a merge patch to the configuration, tableName and type can not be changed.
+	 *
+	 * @param patch the merge patch json
+	 * @return the new table config
+	 */
+	public TableConfig apply(String patch) {
+		JsonElement element;
+		try {
+			element = JsonParser.parseString(JsonMerger.mergePatch(toJson(), patch));
+		} catch (JsonParseException e) {
+			throw new ContractRuntimeException("Table config must be a json object", e);
+		}
+		if (!element.isJsonObject()) {
+			throw new ContractRuntimeException("Table config must be a json object");
+		}
+		JsonObject updated = element.getAsJsonObject();
+		updated.add(TABLE_NAME, json.get(TABLE_NAME));
+		updated.add(TYPE, json.get(TYPE));
+		updated.remove(SCHEMA_HASH);
+		if (json.has(SCHEMA_HASH)) {
+			updated.add(SCHEMA_HASH, json.get(SCHEMA_HASH));
+		}
+		updated.remove(COUNTER_SEEDED);
+		TableConfig config = new TableConfig(updated, true);
+		if (config.counter && isCounterSeeded()) {
+			//计数器保持开启时沿用已初始化的计数
+			config.json.addProperty(COUNTER_SEEDED, true);
+		}
+		if (config.chunkBytes > 0 && config.accumulate == AccumulateMode.HISTORY) {
+			throw new ContractRuntimeException("chunkBytes can not be used with accumulate history, "
+					+ "the history of a chunked value only contains its manifest");
+		}
+		return config;
+	}
+
+	/**
+	 * Copy of the configuration with the schema hash, null removes the schema.
+	 *
+	 * @param schemaHash the schema hash
+	 * @return the new table config
+	 */
+	public TableConfig withSchema(String schemaHash) {
+		JsonObject updated = json.deepCopy();
+		updated.remove(SCHEMA_HASH);
+		if (schemaHash != null) {
+			updated.addProperty(SCHEMA_HASH, schemaHash);
+		}
+		return new TableConfig(updated, true);
+	}
+
+	/**
+	 * Copy of the configuration with the counter marked as seeded.
+	 *
+	 * @return the new table config
+	 */
+	public TableConfig withCounterSeeded() {
+		if (!counter) {
+			throw new ContractRuntimeException("Counter of " + json.get(TABLE_NAME)
+					+ " is not enabled, configure the table with {\"counter\":true} first");
+		}
+		JsonObject updated = json.deepCopy();
+		updated.addProperty(COUNTER_SEEDED, true);
+		return new TableConfig(updated, true);
+	}
+
+	/**
+	 * Whether the record counter is enabled, the counter is only maintained after it is seeded.
+	 *
+	 * @return the boolean
+	 */
+	public boolean isCounterEnabled() {
+		return counter;
+	}
+
+	/**
+	 * Whether the record counter is enabled and seeded from the existing records, only then it can be trusted.
+	 *
+	 * @return the boolean
+	 */
+	public boolean isCounterSeeded() {
+		JsonElement seeded = json.get(COUNTER_SEEDED);
+		return counter && seeded != null && seeded.isJsonPrimitive() && seeded.getAsBoolean();
+	}
+
+	/**
+	 * Whether the table record exists in the world state.
+	 *
+	 * @return the boolean
+	 */
+	public boolean isStored() {
+		return stored;
+	}
+
+	/**
+	 * Gets accumulate.
+	 *
+	 * @return the accumulate
+	 */
+	public AccumulateMode getAccumulate() {
+		return accumulate;
+	}
+
+	/**
+	 * Gets the indexed fields.
+	 *
+	 * @return the indexed field paths
+	 */
+	public List<String> getIndexes() {
+		return indexes;
+	}
+
+	/**
+	 * Gets the hash of the registered schema.
+	 *
+	 * @return the schema hash, null when no schema is registered
+	 */
+	public String getSchemaHash() {
+		JsonElement hash = json.get(SCHEMA_HASH);
+		return hash == null || hash.isJsonNull() ? null : hash.getAsString();
+	}
+
+	/**
+	 * Encode a value with the codec of the table.
+	 *
+	 * @param value the value
+	 * @return the bytes to store
+	 */
+	public byte[] encode(String value) {
+		return ValueCodec.encode(value, format, codec, codecMinBytes);
+	}
+
+	/**
+	 * Gets chunk bytes, 0 means values are never chunked.
+	 *
+	 * @return the chunk bytes
+	 */
+	public int getChunkBytes() {
+		return chunkBytes;
+	}
+
+	/**
+	 * Table record json.
+	 *
+	 * @return the string
+	 */
+	public String toJson() {
+		return json.toString();
+	}
+
+	private static List<String> parseIndexes(JsonElement value) {
+		if (value == null || value.isJsonNull()) {
+			return Collections.emptyList();
+		}
+		if (!value.isJsonArray()) {
+			throw new ContractRuntimeException("Invalid indexes: " + value + ", expecting a json array of field paths");
+		}
+		List<String> fields = new ArrayList<>();
+		for (JsonElement field : value.getAsJsonArray()) {
+			if (!field.isJsonPrimitive() || !field.getAsJsonPrimitive().isString() || field.getAsString().isEmpty()) {
+				throw new ContractRuntimeException("Invalid index field: " + field);
+			}
+			if (!fields.contains(field.getAsString())) {
+				fields.add(field.getAsString());
+			}
+		}
+		return Collections.unmodifiableList(fields);
+	}
+
+	private static ValueCodec.Codec parseCodec(JsonElement value) {
+		if (value == null || value.isJsonNull()) {
+			return ValueCodec.Codec.NONE;
+		}
+		try {
+			return ValueCodec.Codec.valueOf(value.getAsString().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException | UnsupportedOperationException | IllegalStateException e) {
+			throw new ContractRuntimeException("Invalid codec: " + value + ", expecting none/deflate/gzip");
+		}
+	}
+
+	private static ValueCodec.Format parseFormat(JsonElement value) {
+		if (value == null || value.isJsonNull()) {
+			return ValueCodec.Format.JSON;
+		}
+		try {
+			return ValueCodec.Format.valueOf(value.getAsString().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException | UnsupportedOperationException | IllegalStateException e) {
+			throw new ContractRuntimeException("Invalid format: " + value + ", expecting json/cbor");
+		}
+	}
+
+	private static int parseBytes(String name, JsonElement value, int defaultValue) {
+		if (value == null || value.isJsonNull()) {
+			return defaultValue;
+		}
+		try {
+			return Math.max(0, value.getAsInt());
+		} catch (NumberFormatException | UnsupportedOperationException | IllegalStateException e) {
+			throw new ContractRuntimeException("Invalid " + name + ": " + value);
+		}
+	}
+
+	private static boolean parseBoolean(String name, JsonElement value) {
+		if (value == null || value.isJsonNull()) {
+			return false;
+		}
+		if (!value.isJsonPrimitive() || !value.getAsJsonPrimitive().isBoolean()) {
+			throw new ContractRuntimeException("Invalid " + name + ": " + value + ", expecting true/false");
+		}
+		return value.getAsBoolean();
+	}
+
+	private static AccumulateMode parseMode(JsonElement value) {
+		if (value == null || value.isJsonNull()) {
+			return AccumulateMode.ALWAYS;
+		}
+		try {
+			return AccumulateMode.valueOf(value.getAsString().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException | UnsupportedOperationException | IllegalStateException e) {
+			throw new ContractRuntimeException("Invalid accumulate mode: " + value + ", expecting always/never/history");
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import org.hyperledger.fabric.contract.ContractRuntimeException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * <p>
+ * The type Value codec.
+ * 数据的存储编码：按表配置压缩写入账本的数据，读取时根据头部自动解压
+ * <p>
+ * 压缩后的数据以 0x00 开头（json 文本不可能以 0x00 开头），第二个字节为编码标识（'D' deflate、'G' gzip），其后为压缩内容。
+ * 以 CBOR 格式保存的数据头部标识为 'B'，压缩时先转换为 CBOR 再压缩，见 {@link CborCodec}。
+ * 分块保存的大数据在主键上保存清单，头部标识为 'C'，其后为清单 json，见 {@link ChunkedValues}。
+ * 解码只依赖头部，不依赖当前的表配置，因此修改表配置后旧数据仍可正常读取。
+ * 压缩后的数据不再是 json，CouchDB 将其作为附件保存，rich query 无法匹配其中的字段，只适用于不参与查询的表。
+ * <p>
+ * 各背书节点必须使用相同的链码镜像（相同的 JDK），以保证压缩结果逐字节一致
+ */
+public final class ValueCodec {
+
+	/**
+	 * 存储编码
+	 */
+	public enum Codec {
+		/**
+		 * 不压缩（默认）
+		 */
+		NONE,
+		/**
+		 * java.util.zip.Deflater（zlib 格式）
+		 */
+		DEFLATE,
+		/**
+		 * GZIP
+		 */
+		GZIP
+	}
+
+	/**
+	 * 数据格式
+	 */
+	public enum Format {
+		/**
+		 * UTF-8 json 文本（默认）
+		 */
+		JSON,
+		/**
+		 * CBOR 二进制
+		 */
+		CBOR
+	}
+
+	private static final byte MAGIC = 0x00;
+
+	private static final byte DEFLATE_ID = 'D';
+
+	private static final byte GZIP_ID = 'G';
+
+	private static final byte CHUNKED_ID = 'C';
+
+	private static final byte CBOR_ID = 'B';
+
+	private ValueCodec() {
+	}
+
+	/**
+	 * Encode the value, values smaller than minBytes or not shrinking are stored as plain UTF-8.
+	 *
+	 * @param value    the value
+	 * @param codec    the codec
+	 * @param minBytes the min bytes to compress
+	 * @return the bytes
+	 */
+	public static byte[] encode(String value, Codec codec, int minBytes) {
+		return encode(value, Format.JSON, codec, minBytes);
+	}
+
+	/**
+	 * Encode the value in the format, then compress it with the codec.
+	 *
+	 * @param value    the json value
+	 * @param format   the format
+	 * @param codec    the codec
+	 * @param minBytes the min bytes to compress
+	 * @return the bytes
+	 */
+	public static byte[] encode(String value, Format format, Codec codec, int minBytes) {
+		byte[] plain;
+		if (format == Format.CBOR) {
+			byte[] cbor = CborCodec.fromJson(value);
+			plain = new byte[cbor.length + 2];
+			plain[0] = MAGIC;
+			plain[1] = CBOR_ID;
+			System.arraycopy(cbor, 0, plain, 2, cbor.length);
+		} else {
+			plain = value.getBytes(StandardCharsets.UTF_8);
+		}
+		if (codec == Codec.NONE || plain.length < minBytes) {
+			return plain;
+		}
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(plain.length / 2 + 16);
+		buffer.write(MAGIC);
+		buffer.write(codec == Codec.GZIP ? GZIP_ID : DEFLATE_ID);
+		try (OutputStream out = codec == Codec.GZIP ? new GZIPOutputStream(buffer)
+				: new DeflaterOutputStream(buffer)) {
+			out.write(plain);
+		} catch (IOException e) {
+			throw new ContractRuntimeException("Compress value failed", e);
+		}
+		return buffer.size() < plain.length ? buffer.toByteArray() : plain;
+	}
+
+	/**
+	 * Whether the stored bytes are a chunk manifest.
+	 *
+	 * @param bytes the stored bytes
+	 * @return the boolean
+	 */
+	public static boolean isChunked(byte[] bytes) {
+		return bytes != null && bytes.length > 1 && bytes[0] == MAGIC && bytes[1] == CHUNKED_ID;
+	}
+
+	/**
+	 * Whether the stored bytes are plain UTF-8 json text.
+	 *
+	 * @param bytes the stored bytes
+	 * @return the boolean
+	 */
+	public static boolean isText(byte[] bytes) {
+		return bytes == null || bytes.length < 2 || bytes[0] != MAGIC;
+	}
+
+	/**
+	 * Encode a chunk manifest with its header.
+	 *
+	 * @param manifest the manifest json
+	 * @return the bytes
+	 */
+	static byte[] manifest(String manifest) {
+		byte[] json = manifest.getBytes(StandardCharsets.UTF_8);
+		byte[] bytes = new byte[json.length + 2];
+		bytes[0] = MAGIC;
+		bytes[1] = CHUNKED_ID;
+		System.arraycopy(json, 0, bytes, 2, json.length);
+		return bytes;
+	}
+
+	/**
+	 * Decode the stored bytes, a chunk manifest is decoded to the manifest json.
+	 *
+	 * @param bytes the stored bytes
+	 * @return the value, null when bytes is null
+	 */
+	public static String decode(byte[] bytes) {
+		if (bytes == null) {
+			return null;
+		}
+		if (bytes.length < 2 || bytes[0] != MAGIC) {
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+		if (bytes[1] == CHUNKED_ID) {
+			return new String(bytes, 2, bytes.length - 2, StandardCharsets.UTF_8);
+		}
+		if (bytes[1] == CBOR_ID) {
+			return CborCodec.toJson(bytes, 2);
+		}
+		return decode(inflate(bytes));
+	}
+
+	private static byte[] inflate(byte[] bytes) {
+		InputStream compressed = new ByteArrayInputStream(bytes, 2, bytes.length - 2);
+		try (InputStream in = bytes[1] == GZIP_ID ? new GZIPInputStream(compressed)
+				: bytes[1] == DEFLATE_ID ? new InflaterInputStream(compressed) : null) {
+			if (in == null) {
+				throw new ContractRuntimeException("Unknown value codec: " + bytes[1]);
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+			byte[] chunk = new byte[8192];
+			int read;
+			while ((read = in.read(chunk)) != -1) {
+				out.write(chunk, 0, read);
+			}
+			return out.toByteArray();
+		} catch (IOException e) {
+			throw new ContractRuntimeException("Decompress value failed", e);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * <p>
+ * The type Aggregator test.
+ * 数字按 BigDecimal 累加不丢精度，把部分结果作为 partial 继续累加与一次性聚合的结果一致
+ */
+public class AggregatorTest {
+
+	private static final String SPEC = "{\"groupBy\":\"dept\",\"fields\":[\"amount\",\"score.total\"]}";
+
+	private static final String[] DOCS = {
+			"{\"dept\":\"a\",\"amount\":0.1,\"score\":{\"total\":3}}",
+			"{\"dept\":\"b\",\"amount\":9007199254740993}",
+			"{\"dept\":\"a\",\"amount\":0.2,\"score\":{\"total\":-1.5}}",
+			"[1,2]",
+			"{\"amount\":5,\"score\":{\"total\":\"x\"}}",
+			"{\"dept\":\"b\",\"amount\":1,\"score\":{\"total\":2}}",
+			"{\"dept\":\"a\",\"amount\":\"7\"}",
+			"{\"dept\":",
+	};
+
+	@Test
+	public void sumsWithoutLosingPrecision() {
+		JsonObject result = aggregate(null, 0, DOCS.length);
+		JsonObject a = group(result, 0);
+		assertEquals("\"a\"", a.get("group").toString());
+		assertEquals(3L, a.get("count").getAsLong());
+		JsonObject amount = a.getAsJsonObject("fields").getAsJsonObject("amount");
+		assertEquals(2L, amount.get("count").getAsLong());
+		assertEquals(new BigDecimal("0.3"), amount.get("sum").getAsBigDecimal());
+		assertEquals(new BigDecimal("0.1"), amount.get("min").getAsBigDecimal());
+		assertEquals(new BigDecimal("0.2"), amount.get("max").getAsBigDecimal());
+		assertEquals(new BigDecimal("0.15"), amount.get("avg").getAsBigDecimal());
+		JsonObject b = group(result, 1).getAsJsonObject("fields").getAsJsonObject("amount");
+		assertEquals(new BigDecimal("9007199254740994"), b.get("sum").getAsBigDecimal());
+		assertEquals(new BigDecimal("9007199254740993"), b.get("max").getAsBigDecimal());
+	}
+
+	@Test
+	public void groupsMissingFieldsUnderNull() {
+		JsonObject result = aggregate(null, 0, DOCS.length);
+		JsonObject none = group(result, 2);
+		assertEquals("null", none.get("group").toString());
+		JsonObject total = none.getAsJsonObject("fields").getAsJsonObject("score.total");
+		assertEquals(0L, total.get("count").getAsLong());
+		assertEquals(BigDecimal.ZERO, total.get("sum").getAsBigDecimal());
+		assertFalse(total.has("avg"));
+	}
+
+	@Test
+	public void countsUnparsedDocuments() {
+		assertEquals(2L, aggregate(null, 0, DOCS.length).get("unparsed").getAsLong());
+	}
+
+	@Test
+	public void resumesFromPartialResult() {
+		JsonObject expected = aggregate(null, 0, DOCS.length);
+		expected.remove("meta");
+		for (int split = 0; split <= DOCS.length; split++) {
+			String partial = aggregate(null, 0, split).toString();
+			JsonObject resumed = aggregate(partial, split, DOCS.length);
+			resumed.remove("meta");
+			assertEquals(expected, resumed);
+		}
+	}
+
+	private static JsonObject aggregate(String partial, int from, int to) {
+		Aggregator aggregator = Aggregator.of(SPEC, partial);
+		for (int i = from; i < to; i++) {
+			aggregator.accept(DOCS[i]);
+		}
+		QueryMeta meta = new QueryMeta();
+		meta.setRecordsCount(to - from);
+		meta.setBookmark("");
+		meta.setTruncated(false);
+		return JsonParser.parseString(aggregator.toJson(meta)).getAsJsonObject();
+	}
+
+	private static JsonObject group(JsonObject result, int index) {
+		return result.getAsJsonArray("groups").get(index).getAsJsonObject();
+	}
+}
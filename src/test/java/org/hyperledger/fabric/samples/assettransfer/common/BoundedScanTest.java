@@ -0,0 +1,145 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import org.hyperledger.fabric.protos.peer.ChaincodeShim.QueryResponseMetadata;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <p>
+ * The type Bounded scan test.
+ * 在一页中间停止时返回 "偏移:书签"，用该书签继续扫描不会遗漏也不会重复记录
+ */
+public class BoundedScanTest {
+
+	private static final int TOTAL = 10;
+
+	private final List<String> visited = new ArrayList<>();
+
+	/**
+	 * 书签为下一条记录的下标，没有更多记录时为空；每条记录的值为 2 个字节
+	 */
+	private final BoundedScan.PageSource source = (pageSize, bookmark) -> {
+		int start = bookmark.isEmpty() ? 0 : Integer.parseInt(bookmark);
+		int end = Math.min(TOTAL, start + pageSize);
+		List<KeyValue> page = new ArrayList<>();
+		for (int i = start; i < end; i++) {
+			page.add(keyValue("k" + i));
+		}
+		String next = end < TOTAL ? String.valueOf(end) : "";
+		return page(page, next);
+	};
+
+	@Test
+	public void returnsOffsetBookmarkWhenStoppedMidPage() {
+		QueryMeta meta = new BoundedScan(100, 5, 60000, 4).run(source, "4", visitor());
+		assertEquals(2, (int) meta.getRecordsCount());
+		assertEquals("2:4", meta.getBookmark());
+		assertTrue(meta.getTruncated());
+		meta = new BoundedScan(100, 5, 60000, 4).run(source, meta.getBookmark(), visitor());
+		assertEquals("4:4", meta.getBookmark());
+		assertEquals(keys(4, 8), visited);
+	}
+
+	@Test
+	public void returnsPageBookmarkWhenStoppedAtPageStart() {
+		QueryMeta meta = new BoundedScan(100, 5, 60000, 2).run(source, "", visitor());
+		assertEquals("2", meta.getBookmark());
+		assertTrue(meta.getTruncated());
+		assertEquals(keys(0, 2), visited);
+	}
+
+	@Test
+	public void returnsPageBookmarkWhenRecordsLimitIsReached() {
+		QueryMeta meta = new BoundedScan(3, 100, 60000, 4).run(source, "", visitor());
+		assertEquals("3", meta.getBookmark());
+		assertTrue(meta.getTruncated());
+		assertEquals(keys(0, 3), visited);
+	}
+
+	@Test
+	public void resumesWithoutGapsOrDuplicates() {
+		String bookmark = "";
+		boolean truncated = true;
+		int scans = 0;
+		while (truncated) {
+			QueryMeta meta = new BoundedScan(100, 7, 60000, 4).run(source, bookmark, visitor());
+			bookmark = meta.getBookmark();
+			truncated = meta.getTruncated();
+			scans++;
+		}
+		assertEquals("", bookmark);
+		assertEquals(4, scans);
+		assertEquals(keys(0, TOTAL), visited);
+	}
+
+	@Test
+	public void finishesWithEmptyBookmark() {
+		QueryMeta meta = new BoundedScan(100, 100, 60000, 4).run(source, "", visitor());
+		assertEquals(TOTAL, (int) meta.getRecordsCount());
+		assertEquals("", meta.getBookmark());
+		assertFalse(meta.getTruncated());
+	}
+
+	private BoundedScan.Visitor visitor() {
+		return keyValue -> visited.add(keyValue.getKey());
+	}
+
+	private static List<String> keys(int from, int to) {
+		List<String> keys = new ArrayList<>();
+		for (int i = from; i < to; i++) {
+			keys.add("k" + i);
+		}
+		return keys;
+	}
+
+	private static KeyValue keyValue(String key) {
+		return new KeyValue() {
+			@Override
+			public String getKey() {
+				return key;
+			}
+
+			@Override
+			public byte[] getValue() {
+				return getStringValue().getBytes(StandardCharsets.UTF_8);
+			}
+
+			@Override
+			public String getStringValue() {
+				return "{}";
+			}
+		};
+	}
+
+	private static QueryResultsIteratorWithMetadata<KeyValue> page(List<KeyValue> records, String bookmark) {
+		QueryResponseMetadata metadata = QueryResponseMetadata.newBuilder()
+				.setBookmark(bookmark)
+				.setFetchedRecordsCount(records.size())
+				.build();
+		return new QueryResultsIteratorWithMetadata<KeyValue>() {
+			@Override
+			public QueryResponseMetadata getMetadata() {
+				return metadata;
+			}
+
+			@Override
+			public Iterator<KeyValue> iterator() {
+				return records.iterator();
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+}
@@ -0,0 +1,75 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * <p>
+ * The type Cbor codec test.
+ * 整数按最短的宽度编码，超出 long 范围的整数和小数不丢失精度，解码后与原 json 的数值写法一致
+ */
+public class CborCodecTest {
+
+	@Test
+	public void encodesIntegersInTheSmallestWidth() {
+		assertEncoded("0", 1, 0x00);
+		assertEncoded("23", 1, 0x17);
+		assertEncoded("24", 2, 0x18);
+		assertEncoded("255", 2, 0x18);
+		assertEncoded("256", 3, 0x19);
+		assertEncoded("65535", 3, 0x19);
+		assertEncoded("65536", 5, 0x1a);
+		assertEncoded("4294967295", 5, 0x1a);
+		assertEncoded("4294967296", 9, 0x1b);
+		assertEncoded("-1", 1, 0x20);
+		assertEncoded("-24", 1, 0x37);
+		assertEncoded("-25", 2, 0x38);
+		assertEncoded("-4294967297", 9, 0x3b);
+	}
+
+	@Test
+	public void keepsLongBoundaries() {
+		assertEncoded("9223372036854775807", 9, 0x1b);
+		assertEncoded("-9223372036854775808", 9, 0x3b);
+		//超出 long 范围时编码为大整数（tag 2/3）
+		assertEncoded("9223372036854775808", 10, 0xc2);
+		assertEncoded("-9223372036854775809", 10, 0xc3);
+		assertEncoded("18446744073709551616", 11, 0xc2);
+	}
+
+	@Test
+	public void writesNegativeZeroAsZero() {
+		assertEquals("0", roundTrip("-0"));
+		assertEquals("[0,0]", roundTrip("[-0,0]"));
+		assertEquals("0.0", roundTrip("-0.0"));
+	}
+
+	@Test
+	public void keepsDecimalPrecision() {
+		assertEquals(0xc4, CborCodec.fromJson("0.1")[0] & 0xff);
+		assertEquals("0.1", roundTrip("0.1"));
+		assertEquals("-1.50", roundTrip("-1.50"));
+		assertEquals("0.01", roundTrip("1E-2"));
+		assertEquals("1E+3", roundTrip("1e3"));
+		assertEquals("12345678901234567890.5", roundTrip("12345678901234567890.5"));
+		assertEquals("9007199254740993.1", roundTrip("9007199254740993.1"));
+	}
+
+	@Test
+	public void roundTripsDocuments() {
+		String json = "{\"a\":[1,true,null,\"x\"],\"b\":{\"c\":-2.5,\"d\":{}},\"e\":[],\"f\":\"中文\"}";
+		assertEquals(json, roundTrip(json));
+	}
+
+	private static void assertEncoded(String number, int length, int initialByte) {
+		byte[] encoded = CborCodec.fromJson(number);
+		assertEquals(length, encoded.length);
+		assertEquals(initialByte, encoded[0] & 0xff);
+		assertEquals(number, CborCodec.toJson(encoded, 0));
+	}
+
+	private static String roundTrip(String json) {
+		return CborCodec.toJson(CborCodec.fromJson(json), 0);
+	}
+}
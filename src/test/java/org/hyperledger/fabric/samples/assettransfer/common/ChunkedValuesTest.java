@@ -0,0 +1,134 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import org.hyperledger.fabric.contract.ContractRuntimeException;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <p>
+ * The type Chunked values test.
+ * 分块的拆分与拼接、按字节片段只读取需要的块，以及数据变小时清理多余的旧块
+ */
+public class ChunkedValuesTest {
+
+	private static final String TYPE = "file";
+
+	private static final String KEY = "1";
+
+	private final Map<String, byte[]> state = new TreeMap<>();
+
+	private final List<String> reads = new ArrayList<>();
+
+	private final ChaincodeStub stub = (ChaincodeStub) Proxy.newProxyInstance(getClass().getClassLoader(),
+			new Class<?>[] {ChaincodeStub.class}, (proxy, method, args) -> {
+				switch (method.getName()) {
+					case "createCompositeKey":
+						return new CompositeKey((String) args[0], (String[]) args[1]);
+					case "getState":
+						reads.add((String) args[0]);
+						return state.get((String) args[0]);
+					case "putState":
+						state.put((String) args[0], (byte[]) args[1]);
+						return null;
+					case "delState":
+						state.remove((String) args[0]);
+						return null;
+					default:
+						throw new UnsupportedOperationException(method.getName());
+				}
+			});
+
+	@Test
+	public void splitsAndReassembles() {
+		byte[] value = bytes("{\"a\":\"0123456789\"}");
+		byte[] manifest = ChunkedValues.write(stub, TYPE, KEY, value, 4, null);
+		assertTrue(ValueCodec.isChunked(manifest));
+		assertEquals(5, chunkCount());
+		assertEquals(bytes("{\"a\"").length, state.get(chunkKey(0)).length);
+		assertEquals(2, state.get(chunkKey(4)).length);
+		assertArrayEquals(value, ChunkedValues.read(stub, TYPE, KEY, manifest));
+	}
+
+	@Test
+	public void keepsValuesWithinChunkBytesUnchunked() {
+		byte[] value = bytes("{\"a\":1}");
+		assertArrayEquals(value, ChunkedValues.write(stub, TYPE, KEY, value, 7, null));
+		assertEquals(0, chunkCount());
+		assertArrayEquals(value, ChunkedValues.read(stub, TYPE, KEY, value));
+	}
+
+	@Test
+	public void readsOnlyTheChunksOfTheRange() {
+		byte[] value = bytes("{\"a\":\"0123456789\"}");
+		byte[] manifest = ChunkedValues.write(stub, TYPE, KEY, value, 4, null);
+		reads.clear();
+		//字节 [5, 11) 位于第 1、2 块
+		assertArrayEquals(bytes("\"01234"), ChunkedValues.range(stub, TYPE, KEY, manifest, 5, 6));
+		assertEquals(2, reads.size());
+		assertEquals(chunkKey(1), reads.get(0));
+		assertEquals(chunkKey(2), reads.get(1));
+		//正好从块边界开始，到数据末尾截断
+		reads.clear();
+		assertArrayEquals(bytes("\"}"), ChunkedValues.range(stub, TYPE, KEY, manifest, 16, 100));
+		assertEquals(1, reads.size());
+		assertEquals(chunkKey(4), reads.get(0));
+		assertEquals(0, ChunkedValues.range(stub, TYPE, KEY, manifest, 18, 5).length);
+	}
+
+	@Test
+	public void deletesSurplusChunksWhenShrinking() {
+		byte[] manifest = ChunkedValues.write(stub, TYPE, KEY, bytes("{\"a\":\"0123456789\"}"), 4, null);
+		assertEquals(5, chunkCount());
+		byte[] smaller = bytes("{\"a\":\"01\"}");
+		manifest = ChunkedValues.write(stub, TYPE, KEY, smaller, 4, manifest);
+		assertEquals(3, chunkCount());
+		assertFalse(state.containsKey(chunkKey(3)));
+		assertArrayEquals(smaller, ChunkedValues.read(stub, TYPE, KEY, manifest));
+		byte[] small = bytes("{}");
+		assertArrayEquals(small, ChunkedValues.write(stub, TYPE, KEY, small, 4, manifest));
+		assertEquals(0, chunkCount());
+	}
+
+	@Test
+	public void deletesAllChunks() {
+		byte[] manifest = ChunkedValues.write(stub, TYPE, KEY, bytes("{\"a\":\"0123456789\"}"), 4, null);
+		ChunkedValues.delete(stub, TYPE, KEY, manifest);
+		assertEquals(0, chunkCount());
+	}
+
+	@Test
+	public void rejectsCorruptedChunks() {
+		byte[] manifest = ChunkedValues.write(stub, TYPE, KEY, bytes("{\"a\":\"0123456789\"}"), 4, null);
+		state.put(chunkKey(2), bytes("xxxx"));
+		assertThrows(ContractRuntimeException.class, () -> ChunkedValues.read(stub, TYPE, KEY, manifest));
+		state.remove(chunkKey(2));
+		assertThrows(ContractRuntimeException.class, () -> ChunkedValues.read(stub, TYPE, KEY, manifest));
+	}
+
+	private long chunkCount() {
+		String prefix = new CompositeKey("chunk~type~key~index", TYPE, KEY).toString();
+		return state.keySet().stream().filter(key -> key.startsWith(prefix)).count();
+	}
+
+	private static String chunkKey(int index) {
+		return new CompositeKey("chunk~type~key~index", TYPE, KEY, String.format("%06d", index)).toString();
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,97 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * <p>
+ * The type Json merger test.
+ * JsonMerger 的输出需要与原先 create/update 中 Gson Map 方式的合并结果逐字节一致
+ */
+public class JsonMergerTest {
+
+	private static final String TYPE = "user_combination@~type";
+
+	@Test
+	public void formatsNumbersAsDouble() {
+		assertSameAsLegacy(null, "{\"a\":1,\"b\":2.50,\"c\":1e3,\"d\":-0,\"e\":12345678901234567890,\"f\":[1,0.1]}");
+		assertSameAsLegacy("{\"a\":1,\"n\":{\"x\":3}}", "{\"b\":7}");
+	}
+
+	@Test
+	public void dropsNullFields() {
+		assertSameAsLegacy(null, "{\"a\":null,\"b\":1,\"c\":[null,1],\"d\":{\"x\":null,\"y\":2}}");
+		assertSameAsLegacy("{\"a\":1,\"b\":null,\"n\":{\"x\":null,\"y\":1}}", "{\"a\":null,\"c\":[null,1]}");
+	}
+
+	@Test
+	public void escapesHtml() {
+		assertSameAsLegacy("{\"old\":\"<b>&amp;</b>\"}", "{\"h\":\"<a href='x'>&</a>\",\"u\":\"\\u2028=\\u2029\"}");
+	}
+
+	@Test
+	public void keepsFieldOrder() {
+		assertSameAsLegacy("{\"z\":1,\"a\":2,\"m\":3}", "{\"b\":4,\"a\":5,\"c\":6}");
+		assertSameAsLegacy("", "{\"z\":1,\"a\":2}");
+	}
+
+	@Test
+	public void replacesNestedObjectsAsAWhole() {
+		assertSameAsLegacy("{\"o\":{\"p\":{\"q\":[1,{\"r\":\"s\"}]},\"k\":true},\"l\":[[1],[]]}",
+				"{\"o\":{\"p\":{\"t\":false}},\"e\":{}}");
+		assertSameAsLegacy("{\"o\":{\"p\":{\"q\":[1,{\"r\":\"s\"}]}}}", "{\"x\":1}");
+	}
+
+	@Test
+	public void injectsType() {
+		assertSameAsLegacy(null, "{\"a\":1}");
+		assertSameAsLegacy(null, "{\"a\":1,\"type\":\"other\",\"b\":2}");
+		assertSameAsLegacy("{\"a\":1,\"type\":\"old\",\"b\":2}", "{\"c\":3}");
+		assertSameAsLegacy("{\"a\":1,\"b\":2}", "{\"type\":\"new\",\"c\":3}");
+		assertSameAsLegacy("{\"a\":1,\"type\":\"old\"}", "{\"type\":null}");
+	}
+
+	@Test
+	public void keepsLastValueOfNestedDuplicateKeys() {
+		assertSameAsLegacy("{\"o\":{\"a\":1,\"b\":2,\"a\":3}}", "{\"n\":{\"x\":1,\"y\":{\"z\":1,\"z\":[2]},\"x\":4}}");
+		assertSameAsLegacy(null, "{\"n\":{\"x\":1,\"y\":2,\"x\":null}}");
+		assertSameAsLegacy(null, "{\"n\":[{\"x\":null,\"y\":2,\"x\":5}]}");
+	}
+
+	@Test
+	public void rejectsTopLevelDuplicateKeys() {
+		assertThrows(JsonSyntaxException.class, () -> legacyMerge(null, "{\"a\":1,\"a\":2}"));
+		assertThrows(JsonSyntaxException.class, () -> JsonMerger.merge(null, "{\"a\":1,\"a\":2}", TYPE));
+		assertThrows(JsonSyntaxException.class, () -> legacyMerge("{\"a\":1,\"a\":2}", "{\"b\":1}"));
+		assertThrows(JsonSyntaxException.class, () -> JsonMerger.merge("{\"a\":1,\"a\":2}", "{\"b\":1}", TYPE));
+	}
+
+	private static void assertSameAsLegacy(String oldJson, String newJson) {
+		assertEquals(legacyMerge(oldJson, newJson), JsonMerger.merge(oldJson, newJson, TYPE));
+	}
+
+	/**
+	 * 原先 create/update 中的合并方式
+	 */
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	private static String legacyMerge(String oldJson, String newJson) {
+		Gson gson = new Gson();
+		Map map = gson.fromJson(newJson, Map.class);
+		map.put("type", TYPE);
+		String newValue = gson.toJson(map);
+		if (oldJson != null && !oldJson.isEmpty()) {
+			Map oldMap = gson.fromJson(oldJson, Map.class);
+			Map newMap = gson.fromJson(newJson, Map.class);
+			newMap.forEach(oldMap::put);
+			oldMap.put("type", TYPE);
+			newValue = gson.toJson(oldMap);
+		}
+		return newValue;
+	}
+}
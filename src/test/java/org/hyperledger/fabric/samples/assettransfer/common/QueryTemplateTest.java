@@ -0,0 +1,95 @@
+package org.hyperledger.fabric.samples.assettransfer.common;
+
+import org.hyperledger.fabric.contract.ContractRuntimeException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * <p>
+ * The type Query template test.
+ * 占位符只在整个字符串值为 "${name}" 时替换，参数值不能是对象或嵌套数组，因此无法注入操作符或改变查询结构
+ */
+public class QueryTemplateTest {
+
+	private static final String TEMPLATE = "{\"selector\":{\"type\":\"user\",\"status\":\"${status}\","
+			+ "\"age\":{\"$gt\":\"${minAge}\"},\"dept\":{\"$in\":\"${depts}\"}},\"sort\":[{\"age\":\"asc\"}]}";
+
+	@Test
+	public void collectsParams() {
+		assertEquals(new TreeSet<>(Arrays.asList("depts", "minAge", "status")),
+				QueryTemplate.compile("q", TEMPLATE).getParams());
+	}
+
+	@Test
+	public void substitutesPlaceholders() {
+		assertEquals("{\"selector\":{\"type\":\"user\",\"status\":\"active\",\"age\":{\"$gt\":18},"
+						+ "\"dept\":{\"$in\":[\"a\",1,true,null]}},\"sort\":[{\"age\":\"asc\"}]}",
+				QueryTemplate.compile("q", TEMPLATE)
+						.bind("{\"status\":\"active\",\"minAge\":18,\"depts\":[\"a\",1,true,null]}"));
+	}
+
+	@Test
+	public void substitutesPlaceholdersInArrays() {
+		QueryTemplate template = QueryTemplate.compile("q", "{\"selector\":{\"$or\":[{\"a\":\"${x}\"},{\"b\":\"${x}\"}]}}");
+		assertEquals("{\"selector\":{\"$or\":[{\"a\":null},{\"b\":null}]}}", template.bind("{\"x\":null}"));
+	}
+
+	@Test
+	public void leavesPartialPlaceholdersUntouched() {
+		QueryTemplate template = QueryTemplate.compile("q",
+				"{\"selector\":{\"a\":\"x${p}\",\"b\":\"${p} \",\"${p}\":1,\"c\":\"${p}\"}}");
+		assertEquals(new TreeSet<>(Arrays.asList("p")), template.getParams());
+		assertEquals("{\"selector\":{\"a\":\"x${p}\",\"b\":\"${p} \",\"${p}\":1,\"c\":\"v\"}}",
+				template.bind("{\"p\":\"v\"}"));
+	}
+
+	@Test
+	public void keepsParamValuesAsPlainStrings() {
+		QueryTemplate template = QueryTemplate.compile("q", "{\"selector\":{\"a\":\"${p}\",\"b\":\"${q}\"}}");
+		assertEquals("{\"selector\":{\"a\":\"${q}\",\"b\":\"{\\\"$regex\\\":\\\".*\\\"}\"}}",
+				template.bind("{\"p\":\"${q}\",\"q\":\"{\\\"$regex\\\":\\\".*\\\"}\"}"));
+	}
+
+	@Test
+	public void bindsTemplatesWithoutParams() {
+		QueryTemplate template = QueryTemplate.compile("q", "{\"selector\":{\"type\":\"user\"}}");
+		assertEquals("{\"selector\":{\"type\":\"user\"}}", template.bind(null));
+		assertEquals("{\"selector\":{\"type\":\"user\"}}", template.bind(""));
+		assertEquals("{\"selector\":{\"type\":\"user\"}}", template.bind("{}"));
+	}
+
+	@Test
+	public void rejectsObjectParams() {
+		QueryTemplate template = QueryTemplate.compile("q", TEMPLATE);
+		assertThrows(ContractRuntimeException.class, () -> template
+				.bind("{\"status\":{\"$regex\":\".*\"},\"minAge\":0,\"depts\":[]}"));
+		assertThrows(ContractRuntimeException.class, () -> template
+				.bind("{\"status\":\"a\",\"minAge\":0,\"depts\":[{\"$gt\":\"\"}]}"));
+		assertThrows(ContractRuntimeException.class, () -> template
+				.bind("{\"status\":\"a\",\"minAge\":0,\"depts\":[[\"a\"]]}"));
+	}
+
+	@Test
+	public void rejectsUnknownAndMissingParams() {
+		QueryTemplate template = QueryTemplate.compile("q", TEMPLATE);
+		assertThrows(ContractRuntimeException.class, () -> template
+				.bind("{\"status\":\"a\",\"minAge\":0,\"depts\":[],\"$or\":1}"));
+		assertThrows(ContractRuntimeException.class, () -> template.bind("{\"status\":\"a\",\"minAge\":0}"));
+		assertThrows(ContractRuntimeException.class, () -> template.bind(null));
+		assertThrows(ContractRuntimeException.class, () -> template.bind("[\"a\",0,[]]"));
+		assertThrows(ContractRuntimeException.class, () -> template.bind("{\"status\""));
+	}
+
+	@Test
+	public void rejectsInvalidTemplates() {
+		assertThrows(ContractRuntimeException.class, () -> QueryTemplate.compile("q", "[]"));
+		assertThrows(ContractRuntimeException.class, () -> QueryTemplate.compile("q", "{\"selector\""));
+		assertThrows(ContractRuntimeException.class, () -> QueryTemplate.compile("q", "{\"sort\":[]}"));
+		assertThrows(ContractRuntimeException.class, () -> QueryTemplate.compile("q", "{\"selector\":\"${s}\"}"));
+	}
+}